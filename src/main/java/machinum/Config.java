@@ -19,23 +19,36 @@ import machinum.audio.TextXmlReader.TextInfo;
 import machinum.book.BookRepository;
 import machinum.book.BookRestClient;
 import machinum.cache.CacheService;
+import machinum.cache.DiskTier;
+import machinum.chapter.Chapter;
+import machinum.chapter.ChapterIndexCache;
 import machinum.chapter.ChapterJsonlConverter;
 import machinum.exception.AppException;
 import machinum.image.ImageRepository;
+import machinum.image.ImageVariantService;
+import machinum.image.ImageStorage;
+import machinum.image.ImageStorage.LocalImageStorage;
+import machinum.image.ImageStorage.MinioImageStorage;
+import machinum.image.cover.CoverCache;
 import machinum.image.cover.CoverService;
 import machinum.markdown.MarkdownConverter;
 import machinum.minio.MinioService;
 import machinum.pandoc.PandocRestClient;
+import machinum.release.ReleaseCheckpoints;
 import machinum.release.ReleaseRepository;
 import machinum.release.ReleaseRepository.ReleaseTargetRepository;
 import machinum.release.ReleaseScheduleGenerator;
 import machinum.scheduler.ActionHandler.ActionsHandler;
+import machinum.scheduler.ReleaseLanes;
+import machinum.scheduler.ReleaseLeases;
 import machinum.scheduler.Scheduler;
+import machinum.scheduler.Scheduler.ExecutionMode;
 import machinum.telegram.*;
 import machinum.telegram.TelegramAudio.Initializer;
 import machinum.util.Pair;
 import machinum.website.WebsiteHandler;
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.text.StringSubstitutor;
 
 import java.util.function.BiFunction;
@@ -55,12 +68,15 @@ import org.thymeleaf.templateresolver.ClassLoaderTemplateResolver;
 
 import java.io.File;
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
 import java.net.http.HttpClient;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.LocalTime;
 import java.time.temporal.ChronoUnit;
 import java.util.*;
 import java.util.concurrent.Executors;
@@ -70,6 +86,7 @@ import java.util.function.Function;
 import static machinum.Config.Constants.*;
 import static machinum.Config.Misc.*;
 import static machinum.util.Util.firstNonNull;
+import static machinum.util.Util.runAsync;
 
 @Slf4j
 public class Config implements Extension {
@@ -90,15 +107,25 @@ public class Config implements Extension {
             }
         });
 
-        var cache = new CacheService(Duration.of(10, ChronoUnit.MINUTES));
+        var cache = cacheService(config);
         registry.putIfAbsent(CacheService.class, cache);
 
         var jdbi = configureJdbi(registry);
+        var minioClient = minioClient(config);
+        var ttsBucket = config.getString(MINIO_BUCKET_NAME);
+        var jsonlBucket = config.getString(MINIO_JSONL_BUCKET_NAME);
+        var artifactsBucket = config.getString(MINIO_ARTIFACTS_BUCKET_NAME);
+        var imagesBucket = config.getString(MINIO_IMAGES_BUCKET_NAME);
+
+        var imagesMinioService = new MinioService(minioClient, HttpClient.newHttpClient(), imagesBucket);
 
-        var bookRepository = new BookRepository(jdbi);
-        var imageRepository = new ImageRepository(jdbi);
+        var imageStorage = imageStorage(imagesMinioService, config);
+        var imageRepository = new ImageRepository(jdbi, imageStorage);
+        var bookRepository = new BookRepository(jdbi, imageRepository);
         registry.putIfAbsent(BookRepository.class, bookRepository);
         registry.putIfAbsent(ImageRepository.class, imageRepository);
+        var imageVariantService = new ImageVariantService(imageRepository, imageStorage);
+        registry.putIfAbsent(ImageVariantService.class, imageVariantService);
 
         var releaseRepository = new ReleaseRepository(jdbi, objectMapper);
         var targetRepository = new ReleaseTargetRepository(jdbi, objectMapper);
@@ -113,7 +140,8 @@ public class Config implements Extension {
         var httpClient = HttpClient.newBuilder()
                 .connectTimeout(Duration.ofSeconds(30))
                 .build();
-        var restClient = new BookRestClient(httpClient, jsonlConverter, cache, llmUrl);
+        var audioSpoolDir = config.getBoolean(AUDIO_SPOOL) ? Path.of(config.getString(APP_WORK_DIR), "audio") : null;
+        var restClient = new BookRestClient(httpClient, jsonlConverter, cache, llmUrl, audioSpoolDir);
         var markdownConverter = new MarkdownConverter();
 
         registry.putIfAbsent(ChapterJsonlConverter.class, jsonlConverter);
@@ -124,7 +152,7 @@ public class Config implements Extension {
         var pandocRestClient = new PandocRestClient(httpClient, cache, pandocUrl);
         registry.putIfAbsent(PandocRestClient.class, pandocRestClient);
 
-        var coverService = new CoverService();
+        var coverService = new CoverService(new CoverCache(imageStorage));
         registry.putIfAbsent(CoverService.class, coverService);
 
         var textInfo = textInfo(config);
@@ -132,15 +160,14 @@ public class Config implements Extension {
 
         var ttsRestClient = ttsRestClient(config);
 
-        var minioClient = minioClient(config);
-        var ttsBucket = config.getString(MINIO_BUCKET_NAME);
-        var jsonlBucket = config.getString(MINIO_JSONL_BUCKET_NAME);
-
         var minioService = new MinioService(minioClient, HttpClient.newHttpClient(), ttsBucket);
         var jsonlMinioService = new MinioService(minioClient, HttpClient.newHttpClient(), jsonlBucket);
+        var artifactsMinioService = new MinioService(minioClient, HttpClient.newHttpClient(), artifactsBucket);
         var initializer = initializer(minioService, ttsRestClient, textInfo, config);
         registry.putIfAbsent(ServiceKey.key(MinioService.class, "tts"), minioService);
         registry.putIfAbsent(ServiceKey.key(MinioService.class, "jsonl"), jsonlMinioService);
+        registry.putIfAbsent(ServiceKey.key(MinioService.class, "artifacts"), artifactsMinioService);
+        registry.putIfAbsent(ServiceKey.key(MinioService.class, "images"), imagesMinioService);
         registry.putIfAbsent(Initializer.class, initializer);
 
         var coverArt = coverArt(minioService, config);
@@ -155,8 +182,10 @@ public class Config implements Extension {
 
             return substitutor.replace(template);
         });
+        var checkpoints = new ReleaseCheckpoints(artifactsMinioService, releaseRepository);
+        registry.putIfAbsent(ReleaseCheckpoints.class, checkpoints);
         var tgHandler = new TelegramHandler(tgService, tgProperties, releaseRepository, imageRepository,
-                restClient, markdownConverter, pandocRestClient, coverService, telegramAudio, textInfo, coverArt);
+                imageVariantService, restClient, markdownConverter, pandocRestClient, coverService, audioPipeline(telegramAudio, config), textInfo, coverArt, checkpoints);
         registry.putIfAbsent(TelegramClient.class, tgClient);
         registry.putIfAbsent(TelegramService.class, tgService);
 
@@ -164,9 +193,10 @@ public class Config implements Extension {
         var websiteHandler = new WebsiteHandler(releaseRepository, restClient, workDir);
         registry.putIfAbsent(WebsiteHandler.class, websiteHandler);
 
-        var handler = new ActionsHandler(websiteHandler, tgHandler, releaseRepository, targetRepository, bookRepository, restClient, jsonlMinioService, jsonlConverter);
+        var chapterIndexCache = chapterIndexCache(jsonlConverter, workDir, config);
+        var handler = new ActionsHandler(websiteHandler, tgHandler, releaseRepository, targetRepository, bookRepository, restClient, jsonlMinioService, jsonlConverter, chapterIndexCache, checkpoints);
         registry.putIfAbsent(ActionsHandler.class, handler);
-        registry.putIfAbsent(Scheduler.class, new Scheduler(Executors.newScheduledThreadPool(1), releaseRepository, handler));
+        registry.putIfAbsent(Scheduler.class, scheduler(releaseRepository, handler, config));
         registry.putIfAbsent(ServiceKey.key(HttpClient.class, "assets"), HttpClient.newBuilder()
                 .connectTimeout(Duration.ofSeconds(300))
                 .followRedirects(HttpClient.Redirect.NORMAL)
@@ -182,7 +212,9 @@ public class Config implements Extension {
             application.require(CacheService.class)
                     .scheduleCleanup(1, TimeUnit.HOURS);
 
-            createBuckets(application, ttsBucket, jsonlBucket);
+            createBuckets(application, ttsBucket, jsonlBucket, artifactsBucket, imagesBucket);
+            // Content of old images is moved out of the table in background
+            runAsync(() -> application.require(ImageRepository.class).moveToStorage(20));
         });
         application.onStop(() -> {
             application.require(Scheduler.class).close();
@@ -268,6 +300,61 @@ public class Config implements Extension {
         return new TTSRestClient(ttsEndpoint, HttpClient.newHttpClient(), new ObjectMapper());
     }
 
+    private CacheService cacheService(com.typesafe.config.Config config) {
+        var maxSize = config.getBytes(CACHE_MAX_SIZE);
+        var diskTier = config.getBoolean(CACHE_DISK_ENABLED)
+                ? new DiskTier(Path.of(config.getString(CACHE_DISK_FOLDER)), config.getBytes(CACHE_DISK_THRESHOLD))
+                : null;
+        log.info("Cache: maxSize={} bytes, disk tier={}", maxSize, Objects.nonNull(diskTier));
+
+        // Chapters are the only large objects in the cache, they are weighed by their texts
+        return new CacheService(Duration.of(10, ChronoUnit.MINUTES), maxSize, diskTier, value ->
+                value instanceof Chapter chapter
+                        ? 64 + 2L * (StringUtils.length(chapter.getTranslatedTitle()) + StringUtils.length(chapter.getTranslatedText()))
+                        : 64);
+    }
+
+    private ChapterIndexCache chapterIndexCache(ChapterJsonlConverter jsonlConverter, String workDir,
+                                                com.typesafe.config.Config config) {
+        var maxSize = config.getBytes(CHAPTERS_CACHE_MAX_SIZE);
+        var spillDir = config.getBoolean(CHAPTERS_CACHE_SPILL) ? Path.of(workDir, "chapters") : null;
+        log.info("Chapters cache: maxSize={} bytes, spillDir={}", maxSize, spillDir);
+
+        return new ChapterIndexCache(jsonlConverter, maxSize, spillDir);
+    }
+
+    private Scheduler scheduler(ReleaseRepository releaseRepository, ActionsHandler handler,
+                                com.typesafe.config.Config config) {
+        var mode = ExecutionMode.of(config.getString(SCHEDULER_MODE));
+        var concurrency = config.getInt(SCHEDULER_CONCURRENCY);
+        var releaseTime = LocalTime.parse(config.getString(SCHEDULER_RELEASE_TIME));
+        var lanes = ExecutionMode.PARALLEL.equals(mode) ? new ReleaseLanes(concurrency) : null;
+        log.info("Release scheduler works in {} mode, concurrency={}, default release time={}", mode,
+                Objects.isNull(lanes) ? 1 : concurrency, releaseTime);
+
+        var leases = config.getBoolean(SCHEDULER_LEASE_ENABLED) ? releaseLeases(releaseRepository, config) : null;
+
+        var prepareWindow = config.getDuration(SCHEDULER_PREPARE_WINDOW);
+        if (prepareWindow.isPositive()) {
+            log.info("Artifacts of releases are prepared {} ahead", prepareWindow);
+        }
+
+        return new Scheduler(Executors.newScheduledThreadPool(1), releaseRepository, handler, lanes, releaseTime, leases,
+                prepareWindow);
+    }
+
+    private ReleaseLeases releaseLeases(ReleaseRepository releaseRepository, com.typesafe.config.Config config) {
+        var nodeId = config.getString(SCHEDULER_NODE_ID);
+        if (nodeId.isBlank()) {
+            // e.g. 12345@hostname
+            nodeId = ManagementFactory.getRuntimeMXBean().getName();
+        }
+        var duration = config.getDuration(SCHEDULER_LEASE_DURATION);
+        log.info("Release leases are enabled: node={}, duration={}", nodeId, duration);
+
+        return new ReleaseLeases(nodeId, releaseRepository, duration);
+    }
+
     private Initializer initializer(MinioService minioService, TTSRestClient ttsRestClient,
                                                  TextInfo textInfo, com.typesafe.config.Config config) {
         var advertisingKey = config.getString(TTS_ADVERTISING_KEY);
@@ -276,6 +363,11 @@ public class Config implements Extension {
         return new Initializer(minioService, ttsRestClient, advertisingKey, disclaimerKey, textInfo);
     }
 
+    private AudioPipeline audioPipeline(TelegramAudio telegramAudio, com.typesafe.config.Config config) {
+        return new AudioPipeline(telegramAudio, config.getInt(AUDIO_PIPELINE_BATCH_SIZE),
+                config.getBytes(AUDIO_PIPELINE_MAX_IN_FLIGHT));
+    }
+
     @SneakyThrows
     private TelegramAudio telegramAudio(MinioService minioService, TTSRestClient ttsRestClient,
                                         Initializer initializer, CoverArt coverArt, com.typesafe.config.Config config) {
@@ -289,6 +381,18 @@ public class Config implements Extension {
                 coverArt);
     }
 
+    private ImageStorage imageStorage(MinioService minioService, com.typesafe.config.Config config) {
+        var type = config.getString(IMAGES_STORAGE);
+        if ("local".equals(type)) {
+            var folder = Path.of(config.getString(APP_WORK_DIR), "images");
+            log.info("Images are stored in folder: {}", folder);
+            return new LocalImageStorage(folder);
+        }
+
+        log.info("Images are stored in minio bucket: {}", config.getString(MINIO_IMAGES_BUCKET_NAME));
+        return new MinioImageStorage(minioService);
+    }
+
     @SneakyThrows
     private CoverArt coverArt(MinioService minioService, com.typesafe.config.Config config) {
         var coverUrl = config.getString(TTS_COVER_URL);
@@ -302,7 +406,8 @@ public class Config implements Extension {
                 .build();
     }
 
-    private static void createBuckets(@NotNull Jooby application, String ttsBucket, String jsonlBucket) {
+    private static void createBuckets(@NotNull Jooby application, String ttsBucket, String jsonlBucket,
+                                      String artifactsBucket, String imagesBucket) {
         try {
             log.info("Creating minio buckets...");
             // Create buckets if they don't exist
@@ -311,6 +416,12 @@ public class Config implements Extension {
 
             application.require(ServiceKey.key(MinioService.class, "jsonl"))
                     .createBucketIfNotExists(jsonlBucket);
+
+            application.require(ServiceKey.key(MinioService.class, "artifacts"))
+                    .createBucketIfNotExists(artifactsBucket);
+
+            application.require(ServiceKey.key(MinioService.class, "images"))
+                    .createBucketIfNotExists(imagesBucket);
         } catch (Exception e) {
             log.error("Can't create buckets");
         }
@@ -388,6 +499,25 @@ public class Config implements Extension {
         public static final String MINIO_SECRET_KEY = "minio.secretKey";
         public static final String MINIO_BUCKET_NAME = "minio.bucketName";
         public static final String MINIO_JSONL_BUCKET_NAME = "minio.jsonlBucketName";
+        public static final String MINIO_ARTIFACTS_BUCKET_NAME = "minio.artifactsBucketName";
+        public static final String MINIO_IMAGES_BUCKET_NAME = "minio.imagesBucketName";
+        public static final String IMAGES_STORAGE = "images.storage";
+        public static final String SCHEDULER_MODE = "scheduler.mode";
+        public static final String SCHEDULER_CONCURRENCY = "scheduler.concurrency";
+        public static final String SCHEDULER_RELEASE_TIME = "scheduler.releaseTime";
+        public static final String SCHEDULER_NODE_ID = "scheduler.nodeId";
+        public static final String SCHEDULER_LEASE_ENABLED = "scheduler.lease.enabled";
+        public static final String SCHEDULER_LEASE_DURATION = "scheduler.lease.duration";
+        public static final String SCHEDULER_PREPARE_WINDOW = "scheduler.prepare.window";
+        public static final String CACHE_MAX_SIZE = "cache.maxSize";
+        public static final String AUDIO_SPOOL = "audio.spool";
+        public static final String AUDIO_PIPELINE_BATCH_SIZE = "audio.pipeline.batchSize";
+        public static final String AUDIO_PIPELINE_MAX_IN_FLIGHT = "audio.pipeline.maxInFlight";
+        public static final String CACHE_DISK_ENABLED = "cache.disk.enabled";
+        public static final String CACHE_DISK_FOLDER = "cache.disk.folder";
+        public static final String CACHE_DISK_THRESHOLD = "cache.disk.threshold";
+        public static final String CHAPTERS_CACHE_MAX_SIZE = "chapters.cache.maxSize";
+        public static final String CHAPTERS_CACHE_SPILL = "chapters.cache.spill";
 
     }
 
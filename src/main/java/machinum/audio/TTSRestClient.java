@@ -4,10 +4,10 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import io.jooby.StatusCode;
 import lombok.*;
 import lombok.extern.slf4j.Slf4j;
-import machinum.util.CheckedBiConsumer;
+import machinum.util.MultipartBodyPublisher;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
@@ -18,8 +18,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.function.Function;
-
-import static machinum.util.CheckedBiConsumer.checked;
+import java.util.function.Supplier;
 
 @Slf4j
 @RequiredArgsConstructor
@@ -31,36 +30,34 @@ public class TTSRestClient {
 
     private final ObjectMapper objectMapper;
 
-    public byte[] enhanceFiles(byte[] coverArt, Map<String, byte[]> files, String preset, Metadata metadata) throws Exception {
-        String boundary = "----WebKitFormBoundary" + System.currentTimeMillis();
-        ByteArrayOutputStream body = new ByteArrayOutputStream();
+    /**
+     * @param files mp3 files by their names, the content of a file is streamed to the service when it's sent
+     */
+    public byte[] enhanceFiles(byte[] coverArt, Map<String, Supplier<InputStream>> files, String preset, Metadata metadata) throws Exception {
+        var body = new MultipartBodyPublisher("----WebKitFormBoundary" + System.currentTimeMillis());
 
-        addFormField(body, boundary, "preset", preset);
+        addFormField(body, "preset", preset);
 
         if (!Metadata.isEmpty(metadata)) {
             String metadataJson = objectMapper.writeValueAsString(metadata);
-            addFormField(body, boundary, "metadata", metadataJson);
+            addFormField(body, "metadata", metadataJson);
         }
 
-        addFormField(body, boundary, "return_metadata", Boolean.TRUE.toString());
+        addFormField(body, "return_metadata", Boolean.TRUE.toString());
 
         if(coverArt.length > 0) {
-            addFilePart(body, boundary, "cover_art", "cover.jpg", coverArt, "image/jpeg");
+            addFilePart(body, "cover_art", "cover.jpg", coverArt, "image/jpeg");
         }
 
-        files.forEach(checked((filename, bytes) ->
-                addFilePart(body, boundary, "files", filename, bytes, "audio/mpeg")));
-
-        // Add the final boundary to signify the end of the request
-        body.write(("--" + boundary + "--\r\n").getBytes(StandardCharsets.UTF_8));
+        files.forEach((filename, content) -> body.filePart("files", filename, "audio/mpeg", content));
 
         var uri = URI.create(ttsServiceUrl + "/api/enhance");
         log.debug(">> POST {}", uri);
 
         var request = HttpRequest.newBuilder()
                 .uri(uri)
-                .header("Content-Type", "multipart/form-data; boundary=" + boundary)
-                .POST(HttpRequest.BodyPublishers.ofByteArray(body.toByteArray()))
+                .header("Content-Type", body.contentType())
+                .POST(body.build())
                 .build();
 
         HttpResponse<byte[]> response = null;
@@ -87,47 +84,43 @@ public class TTSRestClient {
 
     public byte[] generate(@NonNull TTSRequest request) throws IOException, InterruptedException {
         log.debug("Generating audio from given text: {}", request);
-        String boundary = "----WebKitFormBoundary" + System.currentTimeMillis();
-        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        var body = new MultipartBodyPublisher("----WebKitFormBoundary" + System.currentTimeMillis());
 
-        addFormField(body, boundary, "text", request.getText());
+        addFormField(body, "text", request.getText());
 
         if (request.getVoice() != null && !request.getVoice().isEmpty()) {
-            addFormField(body, boundary, "voice", request.getVoice());
+            addFormField(body, "voice", request.getVoice());
         }
 
         if (request.getOutputFile() != null && !request.getOutputFile().isEmpty()) {
-            addFormField(body, boundary, "output_file", request.getOutputFile());
+            addFormField(body, "output_file", request.getOutputFile());
         }
 
         if (request.getEnhance() != null) {
-            addFormField(body, boundary, "enhance", request.getEnhance().toString());
-            addFormField(body, boundary, "enhance_preset", "podcast");
+            addFormField(body, "enhance", request.getEnhance().toString());
+            addFormField(body, "enhance_preset", "podcast");
         }
 
         if (request.getReturnZip() != null) {
-            addFormField(body, boundary, "return_zip", request.getReturnZip().toString());
+            addFormField(body, "return_zip", request.getReturnZip().toString());
         }
 
         if (!Metadata.isEmpty(request.getMetadata())) {
             String metadataJson = objectMapper.writeValueAsString(request.getMetadata());
-            addFormField(body, boundary, "metadata", metadataJson);
+            addFormField(body, "metadata", metadataJson);
         }
 
         if(Objects.nonNull(request.getCoverArt()) && request.getCoverArt().length > 0) {
-            addFilePart(body, boundary, "cover_art", "cover.jpg", request.getCoverArt(), "image/jpeg");
+            addFilePart(body, "cover_art", "cover.jpg", request.getCoverArt(), "image/jpeg");
         }
 
-        // Add the final boundary to signify the end of the request
-        body.write(("--" + boundary + "--\r\n").getBytes(StandardCharsets.UTF_8));
-
         var uri = URI.create(ttsServiceUrl + "/api/tts");
         log.debug(">> POST {}", uri);
 
         var httpRequest = HttpRequest.newBuilder()
                 .uri(uri)
-                .header("Content-Type", "multipart/form-data; boundary=" + boundary)
-                .POST(HttpRequest.BodyPublishers.ofByteArray(body.toByteArray()))
+                .header("Content-Type", body.contentType())
+                .POST(body.build())
                 .build();
 
         HttpResponse<byte[]> response = null;
@@ -157,44 +150,40 @@ public class TTSRestClient {
                                Integer metadataFileIndex, Metadata metadata) {
         log.debug("Sending MP3 join request to TTS service");
 
-        String boundary = "----WebKitFormBoundary" + System.currentTimeMillis();
-        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        var body = new MultipartBodyPublisher("----WebKitFormBoundary" + System.currentTimeMillis());
 
-        addFormField(body, boundary, "output_name", outputName);
-        addFormField(body, boundary, "enhance", enhance + "");
+        addFormField(body, "output_name", outputName);
+        addFormField(body, "enhance", enhance + "");
         if(enhance) {
-            addFormField(body, boundary, "enhance_preset", "podcast");
+            addFormField(body, "enhance_preset", "podcast");
         }
-        addFormField(body, boundary, "max_file_size", "200mb");
-        addFormField(body, boundary, "add_silent_gaps", "true");
-        addFormField(body, boundary, "metadata_file_index", String.valueOf(metadataFileIndex));
+        addFormField(body, "max_file_size", "200mb");
+        addFormField(body, "add_silent_gaps", "true");
+        addFormField(body, "metadata_file_index", String.valueOf(metadataFileIndex));
 
         if (returnZip) {
-            addFormField(body, boundary, "return_zip", String.valueOf(returnZip));
+            addFormField(body, "return_zip", String.valueOf(returnZip));
         }
 
         if (!Metadata.isEmpty(metadata)) {
             String metadataJson = objectMapper.writeValueAsString(metadata);
-            addFormField(body, boundary, "metadata", metadataJson);
+            addFormField(body, "metadata", metadataJson);
         }
 
         if(Objects.nonNull(coverArt) && coverArt.length > 0) {
-            addFilePart(body, boundary, "cover_art", "cover.jpg", coverArt, "image/jpeg");
+            addFilePart(body, "cover_art", "cover.jpg", coverArt, "image/jpeg");
         }
         if(Objects.nonNull(zipContent) && zipContent.length > 0) {
-            addFilePart(body, boundary, "file", "audio.zip", zipContent, "application/zip");
+            addFilePart(body, "file", "audio.zip", zipContent, "application/zip");
         }
 
-        // Add the final boundary to signify the end of the request
-        body.write(("--" + boundary + "--\r\n").getBytes(StandardCharsets.UTF_8));
-
         var uri = URI.create(ttsServiceUrl + "/api/join");
         log.debug(">> POST {}", uri);
 
         var request = HttpRequest.newBuilder()
                 .uri(uri)
-                .header("Content-Type", "multipart/form-data; boundary=" + boundary)
-                .POST(HttpRequest.BodyPublishers.ofByteArray(body.toByteArray()))
+                .header("Content-Type", body.contentType())
+                .POST(body.build())
                 .build();
 
         HttpResponse<byte[]> response = null;
@@ -220,37 +209,25 @@ public class TTSRestClient {
     /* ============= */
 
     /**
-     * Helper method to write a standard form field to the request body.
-     * @param body The output stream for the request body.
-     * @param boundary The multipart boundary string.
+     * Helper method to add a standard form field to the request body.
+     * @param body The multipart request body.
      * @param name The name of the form field.
      * @param value The value of the form field.
      */
-    private void addFormField(ByteArrayOutputStream body, String boundary, String name, String value) throws IOException {
-        body.write(("--" + boundary + "\r\n").getBytes(StandardCharsets.UTF_8));
-        body.write(("Content-Disposition: form-data; name=\"" + name + "\"\r\n").getBytes(StandardCharsets.UTF_8));
-        body.write(("Content-Type: text/plain; charset=UTF-8\r\n").getBytes(StandardCharsets.UTF_8));
-        body.write("\r\n".getBytes(StandardCharsets.UTF_8));
-        body.write(value.getBytes(StandardCharsets.UTF_8));
-        body.write("\r\n".getBytes(StandardCharsets.UTF_8));
+    private void addFormField(MultipartBodyPublisher body, String name, String value) {
+        body.textPart(name, value, "text/plain; charset=UTF-8");
     }
 
     /**
-     * Helper method to write a file part (e.g., an image) to the request body.
-     * @param body The output stream for the request body.
-     * @param boundary The multipart boundary string.
+     * Helper method to add a file part (e.g., an image) to the request body, the bytes are not copied.
+     * @param body The multipart request body.
      * @param fieldName The form field name for the file.
      * @param fileName The name of the file.
      * @param fileBytes The raw byte data of the file.
      * @param contentType The MIME type of the file.
      */
-    private void addFilePart(ByteArrayOutputStream body, String boundary, String fieldName, String fileName, byte[] fileBytes, String contentType) throws IOException {
-        body.write(("--" + boundary + "\r\n").getBytes(StandardCharsets.UTF_8));
-        body.write(("Content-Disposition: form-data; name=\"%s\"; filename=\"%s\"\r\n".formatted(fieldName, fileName)).getBytes(StandardCharsets.UTF_8));
-        body.write(("Content-Type: " + contentType + "\r\n").getBytes(StandardCharsets.UTF_8));
-        body.write("\r\n".getBytes(StandardCharsets.UTF_8));
-        body.write(fileBytes);
-        body.write("\r\n".getBytes(StandardCharsets.UTF_8));
+    private void addFilePart(MultipartBodyPublisher body, String fieldName, String fileName, byte[] fileBytes, String contentType) {
+        body.filePart(fieldName, fileName, contentType, fileBytes);
     }
 
     @Data
@@ -70,4 +70,28 @@ public class Book {
     @Builder.Default
     private LocalDateTime updatedAt = LocalDateTime.now();
 
+    /**
+     * Columns of a book which are shown in the list, without descriptions, tags and file links.
+     */
+    @Data
+    @AllArgsConstructor
+    @Builder(toBuilder = true)
+    @NoArgsConstructor(access = AccessLevel.PUBLIC)
+    public static class BookSummary {
+
+        public static final String COLUMNS = "id, unique_id, ru_name, en_name, author, year, type, chapters, image_id, created_at";
+
+        private String id;
+        private String uniqueId;
+        private String ruName;
+        private String enName;
+        private String author;
+        private Integer year;
+        private String type;
+        private Integer chapters;
+        private String imageId;
+        private LocalDateTime createdAt;
+
+    }
+
 }
@@ -9,6 +9,8 @@ import io.jooby.annotation.*;
 import io.jooby.exception.StatusCodeException;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import machinum.book.Book.BookSummary;
+import machinum.book.BookRepository.Cursor;
 import machinum.book.BookRestClient.BookExportResult;
 import machinum.minio.MinioService;
 import machinum.novel.NovelScraper;
@@ -41,26 +43,47 @@ public class BookController {
                 jooby.require(ServiceKey.key(MinioService.class, "jsonl")));
     }
 
+    /**
+     * Pages are requested by number, or by {@code cursor} from the {@code X-Next-Cursor} header of the previous
+     * page (an empty cursor means the first page), which doesn't slow down on deep pages. {@code count=estimate}
+     * returns the approximate number of books, {@code count=none} skips counting. Only summaries of books are
+     * returned, see {@link #book} for the full one.
+     */
     @GET("/books")
-    public List<Book> booksList(@QueryParam("query") String queryParam,
+    public List<BookSummary> booksList(@QueryParam("query") String queryParam,
                                 @QueryParam("page") Integer pageParam,
                                 @QueryParam("size") Integer sizeParam,
+                                @QueryParam("cursor") String cursorParam,
+                                @QueryParam("count") String countParam,
                                 Context ctx) {
         var query = Optional.ofNullable(queryParam).orElse("");
         var page = Optional.ofNullable(pageParam).orElse(0);
         var size = Optional.ofNullable(sizeParam).orElse(10);
+        var countMode = Optional.ofNullable(countParam).orElse("exact");
+
+        List<BookSummary> books;
+        if (Objects.nonNull(cursorParam)) {
+            // One extra book tells whether the next page exists
+            var found = repository.list(query, parseCursor(cursorParam), size + 1);
+            books = found.size() > size ? found.subList(0, size) : found;
+            if (found.size() > size) {
+                ctx.setResponseHeader("X-Next-Cursor", Cursor.of(books.getLast()).format());
+            }
+        } else {
+            books = repository.list(query, page, size);
+            ctx.setResponseHeader("X-Current-Page", String.valueOf(page));
+        }
+        ctx.setResponseHeader("X-Page-Size", String.valueOf(size));
 
-        var books = repository.list(query, page, size);
-
-        // Fetch total count of items matching the query
-        var totalItems = repository.count(query);
-        var totalPages = (int) Math.ceil((double) totalItems / size);
+        if (!"none".equals(countMode)) {
+            // Fetch total count of items matching the query
+            var totalItems = "estimate".equals(countMode) ? repository.estimateCount(query) : repository.count(query);
+            var totalPages = (int) Math.ceil((double) totalItems / size);
 
-        // Add pagination metadata to response headers
-        ctx.setResponseHeader("X-Total-Items", String.valueOf(totalItems));
-        ctx.setResponseHeader("X-Total-Pages", String.valueOf(totalPages));
-        ctx.setResponseHeader("X-Current-Page", String.valueOf(page));
-        ctx.setResponseHeader("X-Page-Size", String.valueOf(size));
+            // Add pagination metadata to response headers
+            ctx.setResponseHeader("X-Total-Items", String.valueOf(totalItems));
+            ctx.setResponseHeader("X-Total-Pages", String.valueOf(totalPages));
+        }
 
         return books;
     }
@@ -155,6 +178,18 @@ public class BookController {
 
     /* ============= */
 
+    private Cursor parseCursor(String value) {
+        if (value.isBlank()) {
+            return null;
+        }
+
+        try {
+            return Cursor.parse(value);
+        } catch (Exception e) {
+            throw new StatusCodeException(StatusCode.BAD_REQUEST, "Invalid cursor");
+        }
+    }
+
     private void validateOnCreate(Book item) {
         boolean isEmptyImage;
         if(Objects.isNull(item.getImageData())) {
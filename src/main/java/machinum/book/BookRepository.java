@@ -2,10 +2,15 @@ package machinum.book;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import machinum.book.Book.BookSummary;
 import machinum.exception.AppException;
+import machinum.image.ImageRepository;
 import org.jdbi.v3.core.Jdbi;
 
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
 import java.util.List;
 import java.util.Optional;
 
@@ -14,25 +19,57 @@ import java.util.Optional;
 public class BookRepository {
 
     private final Jdbi jdbi;
+    private final ImageRepository imageRepository;
 
-    public List<Book> list(String query, Integer page, Integer size) {
+    public List<BookSummary> list(String query, Integer page, Integer size) {
         int offset = page * size;
         if (query == null || query.isEmpty()) {
-            return jdbi.withHandle(handle -> handle.createQuery("SELECT * FROM books LIMIT :size OFFSET :offset")
+            return jdbi.withHandle(handle -> handle.createQuery("SELECT %s FROM books LIMIT :size OFFSET :offset".formatted(BookSummary.COLUMNS))
                     .bind("size", size)
                     .bind("offset", offset)
-                    .mapToBean(Book.class)
+                    .mapToBean(BookSummary.class)
                     .list());
         } else {
-            return jdbi.withHandle(handle -> handle.createQuery("SELECT * FROM books WHERE ru_name ILIKE :query OR en_name ILIKE :query LIMIT :size OFFSET :offset")
+            return jdbi.withHandle(handle -> handle.createQuery("SELECT %s FROM books WHERE ru_name ILIKE :query OR en_name ILIKE :query LIMIT :size OFFSET :offset".formatted(BookSummary.COLUMNS))
                     .bind("query", "%" + query + "%")
                     .bind("size", size)
                     .bind("offset", offset)
-                    .mapToBean(Book.class)
+                    .mapToBean(BookSummary.class)
                     .list());
         }
     }
 
+    /**
+     * Keyset pagination in order of creation, the page is found by the index instead of skipping rows.
+     *
+     * @param cursor position after the last book of the previous page, {@code null} for the first page
+     */
+    public List<BookSummary> list(String query, Cursor cursor, int size) {
+        var conditions = new ArrayList<String>();
+        if (query != null && !query.isEmpty()) {
+            conditions.add("(ru_name ILIKE :query OR en_name ILIKE :query)");
+        }
+        if (cursor != null) {
+            conditions.add("(created_at, id) > (:createdAt, :id)");
+        }
+        var where = conditions.isEmpty() ? "" : "WHERE " + String.join(" AND ", conditions);
+
+        return jdbi.withHandle(handle -> {
+            var sql = handle.createQuery("SELECT %s FROM books %s ORDER BY created_at, id LIMIT :size".formatted(BookSummary.COLUMNS, where))
+                    .bind("size", size);
+            if (query != null && !query.isEmpty()) {
+                sql.bind("query", "%" + query + "%");
+            }
+            if (cursor != null) {
+                sql.bind("createdAt", cursor.createdAt())
+                        .bind("id", cursor.id());
+            }
+
+            return sql.mapToBean(BookSummary.class)
+                    .list();
+        });
+    }
+
     public Book getById(String id) {
         return findById(id)
                 .orElseThrow(() -> new AppException("Book for given id is not found: " + id));
@@ -58,6 +95,23 @@ public class BookRepository {
         }
     }
 
+    /**
+     * @return number of books from statistics of the table, exact count for a search or a table
+     * which isn't analyzed yet
+     */
+    public int estimateCount(String query) {
+        if (query == null || query.isEmpty()) {
+            var estimate = jdbi.withHandle(handle -> handle.createQuery("SELECT reltuples::BIGINT FROM pg_class WHERE oid = 'books'::regclass")
+                    .mapTo(Long.class)
+                    .one());
+            if (estimate >= 0) {
+                return estimate.intValue();
+            }
+        }
+
+        return count(query);
+    }
+
     public String create(Book book) {
         return jdbi.withHandle(handle -> handle.createUpdate("""
                             INSERT INTO books (
@@ -104,10 +158,20 @@ public class BookRepository {
                 .execute() > 0);
     }
 
+    /**
+     * The image of the book is removed by {@code trigger_delete_images}, its content is removed from the storage
+     * after the book.
+     */
     public boolean delete(String id) {
-        return jdbi.withHandle(handle -> handle.createUpdate("DELETE FROM books WHERE id = :id")
+        var images = imageRepository.findInfoByBookId(id);
+        var deleted = jdbi.withHandle(handle -> handle.createUpdate("DELETE FROM books WHERE id = :id")
                 .bind("id", id)
                 .execute() > 0);
+        if (deleted) {
+            imageRepository.deleteContent(images);
+        }
+
+        return deleted;
     }
 
     /* ============= */
@@ -120,4 +184,33 @@ public class BookRepository {
         return String.join(",", book.getTags());
     }
 
+    /**
+     * Position of a book in order of creation, it's passed to clients as an opaque string.
+     */
+    public record Cursor(LocalDateTime createdAt, String id) {
+
+        public static Cursor of(BookSummary book) {
+            return new Cursor(book.getCreatedAt(), book.getId());
+        }
+
+        /**
+         * @throws IllegalArgumentException for a malformed value
+         */
+        public static Cursor parse(String value) {
+            var decoded = new String(Base64.getUrlDecoder().decode(value), StandardCharsets.UTF_8);
+            var parts = decoded.split("\\|", 2);
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Malformed cursor: " + value);
+            }
+
+            return new Cursor(LocalDateTime.parse(parts[0]), parts[1]);
+        }
+
+        public String format() {
+            var value = createdAt + "|" + id;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+        }
+
+    }
+
 }
@@ -14,9 +14,13 @@ import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 
 @Slf4j
 @RequiredArgsConstructor
@@ -26,6 +30,15 @@ public class BookRestClient {
     private final ChapterJsonlConverter chapterJsonlConverter;
     private final CacheService inMemoryCache;
     private final String baseUrl;
+    /**
+     * Folder for downloaded audio archives, {@code null} means that audio is kept in memory.
+     */
+    private final Path audioSpoolDir;
+
+    public BookRestClient(HttpClient httpClient, ChapterJsonlConverter chapterJsonlConverter,
+                          CacheService inMemoryCache, String baseUrl) {
+        this(httpClient, chapterJsonlConverter, inMemoryCache, baseUrl, null);
+    }
 
 
     public List<BookExportResult> getAllBookTitlesCached() {
@@ -136,6 +149,56 @@ public class BookRestClient {
         return response.body();
     }
 
+    public boolean isAudioSpoolEnabled() {
+        return Objects.nonNull(audioSpoolDir);
+    }
+
+    /**
+     * Streams the audio archive to the spool folder instead of the heap. A previously downloaded archive
+     * is reused, e.g. when a failed release is executed again, see {@link #removeAudioFile}.
+     *
+     * @return zip file with mp3 files
+     */
+    @SneakyThrows
+    public Path getAudioFile(String bookId, Integer from, Integer to, byte[] coverArt) {
+        var file = audioSpoolDir.resolve("audio_%s_%s_%s.zip".formatted(bookId, from, to));
+        if (Files.exists(file) && Files.size(file) > 0) {
+            log.debug("Reuse downloaded audio: bookId={}, file={}", bookId, file);
+            return file;
+        }
+
+        var urlBuilder = "%s/api/books/%s/audio?from=%d&to=%d".formatted(baseUrl, bookId, from, to);
+
+        log.debug("Send request to download audio: bookId={}", bookId);
+
+        Files.createDirectories(audioSpoolDir);
+        var temp = Files.createTempFile(audioSpoolDir, "audio_", ".tmp");
+        try {
+            var response = httpClient.send(HttpRequest.newBuilder()
+                    .uri(URI.create(urlBuilder))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(coverArt))
+                    .build(), HttpResponse.BodyHandlers.ofFile(temp));
+
+            if (response.statusCode() != 200) {
+                log.error("Can't get book's audio: bookId={}\n{}", bookId, Files.readString(temp, StandardCharsets.UTF_8));
+                throw new AppException("Can't get book's audio");
+            }
+
+            log.debug("Downloaded audio: bookId={}, size={}mb", bookId, Files.size(temp) / 1024 / 1024);
+            return Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    @SneakyThrows
+    public void removeAudioFile(String bookId, Integer from, Integer to) {
+        if (isAudioSpoolEnabled()) {
+            Files.deleteIfExists(audioSpoolDir.resolve("audio_%s_%s_%s.zip".formatted(bookId, from, to)));
+        }
+    }
+
     public record BookExportResult(String id, String title, Integer chaptersCount) {
     }
 
@@ -1,62 +1,183 @@
 package machinum.cache;
 
-import lombok.*;
 import lombok.extern.slf4j.Slf4j;
 import machinum.util.CheckedSupplier;
+import org.apache.commons.lang3.exception.ExceptionUtils;
 
 import java.time.Duration;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToLongFunction;
 
+/**
+ * In-memory cache with single-flight loading.
+ * <p>
+ * Concurrent callers for the same key share one in-flight load, loads of different keys never block each other.
+ * The total weight of values (approximate size in bytes) is bounded, the least recently used entries are
+ * evicted first once the limit is exceeded.
+ * <p>
+ * With a {@link DiskTier}, large byte arrays are kept on disk and the cache holds only a small handle of them,
+ * a hit still reads the whole value into the heap for its caller.
+ */
 @Slf4j
-@RequiredArgsConstructor
 public class CacheService implements AutoCloseable {
 
-    private final Map<String, CacheEntry<?>> cache = new ConcurrentHashMap<>();
+    public static final long DEFAULT_MAX_WEIGHT = 256L * 1024 * 1024;
+
+    /**
+     * Accounting states of an entry: the weight isn't added yet, is added, or is subtracted after removal.
+     */
+    private static final int NEW = 0;
+    private static final int COUNTED = 1;
+    private static final int RELEASED = 2;
+
+    private final Map<String, CacheEntry> cache = new ConcurrentHashMap<>();
+
+    /**
+     * Counted entries in access order, the eldest one is evicted first. Guarded by itself.
+     */
+    private final LinkedHashMap<String, CacheEntry> lru = new LinkedHashMap<>(16, 0.75f, true);
 
     private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(1);
 
     private final Duration defaultExpire;
 
+    private final long maxWeight;
+
+    /**
+     * Tier for large binary values, {@code null} means that all values are kept in memory.
+     */
+    private final DiskTier diskTier;
+
+    /**
+     * Weighs values which aren't byte arrays, strings, collections or maps, e.g. domain objects.
+     */
+    private final ToLongFunction<Object> objectWeigher;
+
+    private final AtomicLong weight = new AtomicLong();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder loadFailures = new LongAdder();
+
+    public CacheService(Duration defaultExpire) {
+        this(defaultExpire, DEFAULT_MAX_WEIGHT);
+    }
+
+    public CacheService(Duration defaultExpire, long maxWeight) {
+        this(defaultExpire, maxWeight, null);
+    }
+
+    public CacheService(Duration defaultExpire, long maxWeight, DiskTier diskTier) {
+        this(defaultExpire, maxWeight, diskTier, value -> 64);
+    }
+
+    /**
+     * @param objectWeigher approximate size in bytes of a value which the cache can't weigh itself
+     */
+    public CacheService(Duration defaultExpire, long maxWeight, DiskTier diskTier, ToLongFunction<Object> objectWeigher) {
+        this.defaultExpire = defaultExpire;
+        this.maxWeight = maxWeight;
+        this.diskTier = diskTier;
+        this.objectWeigher = objectWeigher;
+    }
 
     public <U> U get(String key, CheckedSupplier<U> dataSupplier) {
         return get(key, dataSupplier, defaultExpire.toMillis(), TimeUnit.MILLISECONDS);
     }
 
-    @Synchronized
     public <U> U get(String key, CheckedSupplier<U> dataSupplier, long expirationTime, TimeUnit timeUnit) {
-        if (cache.containsKey(key)) {
-            if (!cache.get(key).isExpired()) {
-                log.debug("Return value from cache for: {}", key);
-                return (U) cache.get(key).getValue();
-            } else {
-                evict(key);
-            }
-        }
+        return get(key, dataSupplier, expirationTime, timeUnit, false);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <U> U get(String key, CheckedSupplier<U> dataSupplier, long expirationTime, TimeUnit timeUnit,
+                      boolean persistent) {
+        while (true) {
+            var entry = cache.get(key);
+            if (Objects.nonNull(entry)) {
+                if (entry.isExpired()) {
+                    remove(key, entry);
+                    continue;
+                }
 
-        var cacheEntry = cache.computeIfAbsent(key, k -> {
-            log.debug("Cache miss for key: {}", key);
-            var value = dataSupplier.resolve();
+                var value = await(entry);
+                if (value == DiskHandle.INSTANCE) {
+                    var stored = diskTier.read(key);
+                    if (stored.isEmpty()) {
+                        // The file is removed or expired, load the value again
+                        remove(key, entry);
+                        continue;
+                    }
+                    value = stored.get().data();
+                }
 
-            var expiryTime = getExpiryTime(expirationTime, timeUnit, value);
+                hits.increment();
+                touch(key);
+                log.debug("Return value from cache for: {}", key);
+                return (U) value;
+            }
 
-            return new CacheEntry<>(value, expiryTime);
-        });
+            var newEntry = new CacheEntry();
+            if (Objects.isNull(cache.putIfAbsent(key, newEntry))) {
+                misses.increment();
+                log.debug("Cache miss for key: {}", key);
+                try {
+                    return load(key, newEntry, dataSupplier, timeUnit.toMillis(expirationTime), persistent);
+                } catch (Throwable e) {
+                    // Callers waiting for the entry must never hang, whatever failed during the load
+                    if (newEntry.future.completeExceptionally(e)) {
+                        cache.remove(key, newEntry);
+                    }
+                    throw e;
+                }
+            }
+        }
+    }
 
-        return (U) cacheEntry.getValue();
+    /**
+     * Same as {@link #get(String, CheckedSupplier, long, TimeUnit)}, but a byte array value is always kept by
+     * the disk tier regardless of its size, so it survives restarts. Without the disk tier the value is kept
+     * in memory as usual.
+     */
+    public byte[] getPersistent(String key, CheckedSupplier<byte[]> dataSupplier, long expirationTime, TimeUnit timeUnit) {
+        return get(key, dataSupplier, expirationTime, timeUnit, true);
     }
 
     public void evict(String key) {
-        cache.remove(key);
+        var entry = cache.remove(key);
+        if (Objects.nonNull(entry)) {
+            release(entry);
+            unlink(key, entry);
+        }
+        if (Objects.nonNull(diskTier)) {
+            diskTier.remove(key);
+        }
     }
 
+    /**
+     * Clears the in-memory tier, values of the disk tier are kept until their expiry.
+     */
     public void clear() {
-        cache.clear();
+        cache.forEach(this::remove);
+    }
+
+    public CacheStats stats() {
+        return new CacheStats(hits.sum(), misses.sum(), evictions.sum(), loadFailures.sum(), cache.size(), weight.get());
     }
 
     public void scheduleCleanup(long period, TimeUnit timeUnit) {
@@ -71,41 +192,200 @@ public class CacheService implements AutoCloseable {
 
     /* ============= */
 
+    @SuppressWarnings("unchecked")
+    private <U> U load(String key, CacheEntry entry, CheckedSupplier<U> dataSupplier, long expirationMillis,
+                       boolean persistent) {
+        var stored = Objects.nonNull(diskTier) ? diskTier.read(key) : Optional.<DiskTier.StoredValue>empty();
+        if (stored.isPresent()) {
+            // Value was stored by the disk tier before, e.g. before restart
+            log.debug("Restore value from disk for: {}", key);
+            entry.weight = DiskHandle.WEIGHT;
+            entry.expiryTime = stored.get().expiryTime();
+            entry.future.complete(DiskHandle.INSTANCE);
+            account(key, entry);
+
+            return (U) stored.get().data();
+        }
+
+        U value;
+        try {
+            value = dataSupplier.get();
+        } catch (Throwable e) {
+            loadFailures.increment();
+            cache.remove(key, entry);
+            entry.future.completeExceptionally(e);
+            return ExceptionUtils.rethrow(e);
+        }
+
+        entry.expiryTime = isEmpty(value) ? System.currentTimeMillis() - 1 : System.currentTimeMillis() + expirationMillis;
+        if (!entry.isExpired() && Objects.nonNull(diskTier) && diskTier.accepts(value, persistent)) {
+            try {
+                diskTier.write(key, (byte[]) value, entry.expiryTime);
+                entry.weight = DiskHandle.WEIGHT;
+                entry.future.complete(DiskHandle.INSTANCE);
+                account(key, entry);
+
+                return value;
+            } catch (Exception e) {
+                log.warn("Can't store value on disk, keep it in memory: {}", key, e);
+            }
+        }
+
+        entry.weight = weigh(value);
+        entry.future.complete(value);
+        account(key, entry);
+
+        return value;
+    }
+
+    private void account(String key, CacheEntry entry) {
+
+        if (entry.isExpired() || entry.weight > maxWeight) {
+            // Empty and oversized values are handed to the waiting callers, but aren't kept
+            cache.remove(key, entry);
+        } else if (entry.state.compareAndSet(NEW, COUNTED)) {
+            weight.addAndGet(entry.weight);
+            link(key, entry);
+            if (cache.get(key) != entry) {
+                // Removed while being accounted
+                release(entry);
+                unlink(key, entry);
+            }
+            evictIfNeeded();
+        }
+    }
+
+    private Object await(CacheEntry entry) {
+        try {
+            return entry.future.join();
+        } catch (CompletionException e) {
+            return ExceptionUtils.rethrow(Objects.requireNonNullElse(e.getCause(), e));
+        }
+    }
+
+    private void remove(String key, CacheEntry entry) {
+        if (cache.remove(key, entry)) {
+            release(entry);
+            unlink(key, entry);
+        }
+    }
+
+    private void link(String key, CacheEntry entry) {
+        synchronized (lru) {
+            lru.put(key, entry);
+        }
+    }
+
+    private void unlink(String key, CacheEntry entry) {
+        synchronized (lru) {
+            lru.remove(key, entry);
+        }
+    }
+
+    /**
+     * Moves the entry to the end of the access order.
+     */
+    private void touch(String key) {
+        synchronized (lru) {
+            lru.get(key);
+        }
+    }
+
+    /**
+     * Subtracts the weight of a removed entry, at most once per entry.
+     */
+    private void release(CacheEntry entry) {
+        if (entry.state.compareAndSet(COUNTED, RELEASED)) {
+            weight.addAndGet(-entry.weight);
+        } else {
+            entry.state.compareAndSet(NEW, RELEASED);
+        }
+    }
+
+    private void evictIfNeeded() {
+        if (weight.get() <= maxWeight) {
+            return;
+        }
+
+        synchronized (lru) {
+            var iterator = lru.entrySet().iterator();
+            while (weight.get() > maxWeight && iterator.hasNext()) {
+                var eldest = iterator.next();
+                iterator.remove();
+                if (cache.remove(eldest.getKey(), eldest.getValue())) {
+                    release(eldest.getValue());
+                    evictions.increment();
+                    log.debug("Evicted cache entry: {}", eldest.getKey());
+                }
+            }
+        }
+    }
+
     private void removeExpiredEntries() {
-        var expiredCount = cache.entrySet().stream()
+        var expired = cache.entrySet().stream()
                 .filter(entry -> entry.getValue().isExpired())
-                .map(Map.Entry::getKey)
                 .toList();
 
-        expiredCount.forEach(cache::remove);
-        log.debug("Removed {} expired cache entries", expiredCount.size());
+        expired.forEach(entry -> remove(entry.getKey(), entry.getValue()));
+        var expiredFiles = Objects.nonNull(diskTier) ? diskTier.removeExpired() : 0;
+        log.debug("Removed {} expired cache entries, {} files, stats: {}", expired.size(), expiredFiles, stats());
     }
 
-    private <U> long getExpiryTime(long expirationTime, TimeUnit timeUnit, U value) {
-        var isEmpty = Objects.isNull(value) || switch (value) {
+    private static boolean isEmpty(Object value) {
+        return Objects.isNull(value) || switch (value) {
             case List<?> l -> l.isEmpty();
             case Map<?, ?> m -> m.isEmpty();
             case byte[] b -> b.length == 0;
             case String s -> s.isEmpty();
             default -> false;
         };
+    }
+
+    /**
+     * @return approximate size of the value in bytes
+     */
+    private long weigh(Object value) {
+        return switch (value) {
+            case null -> 0;
+            case byte[] b -> b.length;
+            case String s -> 2L * s.length();
+            case Collection<?> c -> 16L * c.size() + c.stream().mapToLong(this::weigh).sum();
+            case Map<?, ?> m -> 64L * m.size();
+            default -> objectWeigher.applyAsLong(value);
+        };
+    }
+
+    /**
+     * @param weight total weight of cached values, in bytes
+     */
+    public record CacheStats(long hits, long misses, long evictions, long loadFailures, int size, long weight) {}
+
+    /**
+     * Marks values which are stored by the disk tier.
+     */
+    private enum DiskHandle {
+
+        INSTANCE;
+
+        private static final long WEIGHT = 64;
 
-        var expiryTime = isEmpty ? System.currentTimeMillis() - 1 : System.currentTimeMillis() + timeUnit.toMillis(expirationTime);
-        return expiryTime;
     }
 
-    @Data
-    @AllArgsConstructor
-    @Builder(toBuilder = true)
-    @NoArgsConstructor(access = AccessLevel.PUBLIC)
-    private static class CacheEntry<T> {
+    private static class CacheEntry {
+
+        private final CompletableFuture<Object> future = new CompletableFuture<>();
+
+        private volatile long expiryTime = Long.MAX_VALUE;
 
-        T value;
+        private volatile long weight;
 
-        long expiryTime;
+        /**
+         * Whether the weight of the entry is added to the total weight, see {@link #NEW}.
+         */
+        private final AtomicInteger state = new AtomicInteger(NEW);
 
         public boolean isExpired() {
-            return System.currentTimeMillis() > expiryTime;
+            return future.isDone() && System.currentTimeMillis() > expiryTime;
         }
 
     }
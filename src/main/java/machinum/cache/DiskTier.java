@@ -0,0 +1,124 @@
+package machinum.cache;
+
+import lombok.extern.slf4j.Slf4j;
+import machinum.exception.AppException;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.Optional;
+
+import static machinum.util.Util.sha256;
+
+/**
+ * Disk tier of {@link CacheService} for large binary values.
+ * <p>
+ * Every value is a file named by the hash of its key, the last modified time of the file is the expiry time
+ * of the value, so entries survive restarts without a separate index.
+ * <p>
+ * Values aren't served from memory-mapped files: every caller of the cache needs the whole value as a byte array
+ * (an EPUB is hashed and checkpointed, an audio archive is read as a zip), so a mapped buffer would be copied to
+ * the heap anyway. A hit reads the whole file into the heap, the tier only keeps large values from being
+ * retained by the cache between hits.
+ */
+@Slf4j
+public class DiskTier {
+
+    private final Path folder;
+
+    /**
+     * Min size of byte array which is stored on disk, in bytes.
+     */
+    private final long threshold;
+
+    public DiskTier(Path folder, long threshold) {
+        this.folder = folder;
+        this.threshold = threshold;
+        try {
+            Files.createDirectories(folder);
+        } catch (IOException e) {
+            throw new AppException("Can't create cache folder: " + folder, e);
+        }
+    }
+
+    /**
+     * @param force whether a byte array is accepted regardless of its size
+     */
+    public boolean accepts(Object value, boolean force) {
+        return value instanceof byte[] bytes && (force || bytes.length >= threshold);
+    }
+
+    /**
+     * @return value which is read into the heap as a whole, or empty if there's no value or it's expired
+     */
+    public Optional<StoredValue> read(String key) {
+        var file = file(key);
+        try {
+            var expiryTime = Files.getLastModifiedTime(file).toMillis();
+            if (expiryTime < System.currentTimeMillis()) {
+                Files.deleteIfExists(file);
+                return Optional.empty();
+            }
+
+            return Optional.of(new StoredValue(Files.readAllBytes(file), expiryTime));
+        } catch (NoSuchFileException e) {
+            return Optional.empty();
+        } catch (IOException e) {
+            log.warn("Can't read cached file: {}", file, e);
+            return Optional.empty();
+        }
+    }
+
+    public void write(String key, byte[] data, long expiryTime) {
+        var file = file(key);
+        try {
+            var temp = Files.createTempFile(folder, file.getFileName().toString(), ".tmp");
+            Files.write(temp, data);
+            Files.setLastModifiedTime(temp, FileTime.fromMillis(expiryTime));
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new AppException("Can't write cached file: " + file, e);
+        }
+    }
+
+    public void remove(String key) {
+        try {
+            Files.deleteIfExists(file(key));
+        } catch (IOException e) {
+            log.warn("Can't remove cached file for: {}", key);
+        }
+    }
+
+    /**
+     * @return number of removed files
+     */
+    public int removeExpired() {
+        var now = System.currentTimeMillis();
+        try (var files = Files.list(folder)) {
+            return (int) files.filter(file -> {
+                        try {
+                            return Files.getLastModifiedTime(file).toMillis() < now && Files.deleteIfExists(file);
+                        } catch (IOException e) {
+                            log.warn("Can't remove expired cached file: {}", file);
+                            return false;
+                        }
+                    })
+                    .count();
+        } catch (IOException e) {
+            log.warn("Can't list cache folder: {}", folder);
+            return 0;
+        }
+    }
+
+    /* ============= */
+
+    private Path file(String key) {
+        return folder.resolve(sha256(key) + ".bin");
+    }
+
+    public record StoredValue(byte[] data, long expiryTime) {}
+
+}
@@ -0,0 +1,211 @@
+package machinum.chapter;
+
+import lombok.extern.slf4j.Slf4j;
+import machinum.exception.AppException;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import static machinum.util.Util.md5;
+
+/**
+ * Cache of parsed jsonl chapters, an entry is keyed by the object key and its ETag, so a changed file
+ * is never served from the cache.
+ * <p>
+ * Entries are kept in memory until the total size of their source files exceeds the limit, the least
+ * recently used entries are evicted first. When a spill folder is configured, source files are also kept
+ * on disk, so an evicted entry (or an entry after restart) is parsed from the local copy without downloading.
+ */
+@Slf4j
+public class ChapterIndexCache {
+
+    private final ChapterJsonlConverter converter;
+    private final long maxWeight;
+    private final Path spillDir;
+
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long weight;
+
+    /**
+     * Loads in progress, concurrent releases of one book download and parse the file once.
+     */
+    private final Map<String, CompletableFuture<List<Chapter>>> loading = new ConcurrentHashMap<>();
+
+    /**
+     * @param maxWeight max total size of cached files in bytes, {@code 0} disables the cache
+     * @param spillDir  folder for local copies of files, {@code null} disables the spill
+     */
+    public ChapterIndexCache(ChapterJsonlConverter converter, long maxWeight, Path spillDir) {
+        this.converter = converter;
+        this.maxWeight = maxWeight;
+        this.spillDir = spillDir;
+    }
+
+    public boolean isEnabled() {
+        return maxWeight > 0;
+    }
+
+    /**
+     * A file bigger than the cache would be parsed as a whole on every release and never kept, such a file
+     * must be read by the release window instead.
+     *
+     * @param size size of the file in bytes
+     */
+    public boolean accepts(long size) {
+        return isEnabled() && size <= maxWeight;
+    }
+
+    /**
+     * @param link   object key of jsonl file
+     * @param etag   current ETag of the object
+     * @param size   size of the object in bytes
+     * @param loader opens the object content, is called only on cache miss
+     * @return all normalized chapters of the file, the list is unmodifiable and chapters are shared, so they
+     * must not be changed, see {@link ChapterJsonlConverter#normalize}
+     */
+    public List<Chapter> get(String link, String etag, long size, Supplier<InputStream> loader) {
+        var key = link + "#" + etag;
+        var cached = find(key);
+        if (Objects.nonNull(cached)) {
+            return cached;
+        }
+
+        var future = new CompletableFuture<List<Chapter>>();
+        var inFlight = loading.putIfAbsent(key, future);
+        if (Objects.nonNull(inFlight)) {
+            log.debug("Wait for chapters which are being loaded: link={}, etag={}", link, etag);
+            return await(inFlight);
+        }
+
+        try {
+            // The entry could be put by a load which finished after the first lookup
+            var chapters = find(key);
+            if (Objects.isNull(chapters)) {
+                chapters = Collections.unmodifiableList(converter.normalize(load(link, etag, loader)));
+                put(link, key, new Entry(chapters, Math.max(size, 1)));
+            }
+            future.complete(chapters);
+
+            return chapters;
+        } catch (Throwable e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(key, future);
+        }
+    }
+
+    /* ============= */
+
+    private List<Chapter> find(String key) {
+        synchronized (entries) {
+            var entry = entries.get(key);
+            if (Objects.nonNull(entry)) {
+                log.debug("Chapters are found in cache: key={}", key);
+                return entry.chapters();
+            }
+        }
+
+        return null;
+    }
+
+    private List<Chapter> await(CompletableFuture<List<Chapter>> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            return ExceptionUtils.rethrow(Objects.requireNonNullElse(e.getCause(), e));
+        }
+    }
+
+    private List<Chapter> load(String link, String etag, Supplier<InputStream> loader) {
+        if (Objects.isNull(spillDir)) {
+            log.debug("Download chapters: link={}, etag={}", link, etag);
+            try (var stream = loader.get()) {
+                return converter.fromStream(stream, 0, Integer.MAX_VALUE - 1);
+            } catch (IOException e) {
+                throw new AppException("Can't read chapters: " + link, e);
+            }
+        }
+
+        var prefix = md5(link);
+        var file = spillDir.resolve("%s-%s.jsonl".formatted(prefix, etag.replaceAll("[^\\w-]", "")));
+        try {
+            if (Files.notExists(file)) {
+                log.debug("Download chapters to local copy: link={}, etag={}, file={}", link, etag, file);
+                Files.createDirectories(spillDir);
+                var temp = Files.createTempFile(spillDir, prefix, ".tmp");
+                try (var stream = loader.get()) {
+                    Files.copy(stream, temp, StandardCopyOption.REPLACE_EXISTING);
+                }
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                removeStaleCopies(prefix, file);
+            }
+
+            try (var stream = Files.newInputStream(file)) {
+                return converter.fromStream(stream, 0, Integer.MAX_VALUE - 1);
+            }
+        } catch (IOException e) {
+            throw new AppException("Can't read chapters: " + link, e);
+        }
+    }
+
+    private void put(String link, String key, Entry entry) {
+        if (entry.weight() > maxWeight) {
+            log.debug("Chapters are too big to be cached: key={}, size={}", key, entry.weight());
+            return;
+        }
+
+        synchronized (entries) {
+            // Entries of previous versions of the file can't be used anymore
+            entries.entrySet().removeIf(e -> {
+                boolean stale = e.getKey().startsWith(link + "#");
+                if (stale) {
+                    weight -= e.getValue().weight();
+                }
+                return stale;
+            });
+            entries.put(key, entry);
+            weight += entry.weight();
+
+            var iterator = entries.entrySet().iterator();
+            while (weight > maxWeight && iterator.hasNext()) {
+                Map.Entry<String, Entry> eldest = iterator.next();
+                iterator.remove();
+                weight -= eldest.getValue().weight();
+                log.debug("Evicted chapters from cache: key={}", eldest.getKey());
+            }
+        }
+    }
+
+    private void removeStaleCopies(String prefix, Path actual) {
+        try (var files = Files.list(spillDir)) {
+            files.filter(path -> path.getFileName().toString().startsWith(prefix + "-"))
+                    .filter(path -> !path.equals(actual))
+                    .forEach(path -> {
+                        try {
+                            Files.deleteIfExists(path);
+                        } catch (IOException e) {
+                            log.warn("Can't remove stale local copy: {}", path);
+                        }
+                    });
+        } catch (IOException e) {
+            log.warn("Can't list local copies: {}", spillDir);
+        }
+    }
+
+    private record Entry(List<Chapter> chapters, long weight) {}
+
+}
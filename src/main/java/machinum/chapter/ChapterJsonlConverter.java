@@ -10,8 +10,14 @@ import lombok.extern.slf4j.Slf4j;
 import machinum.exception.AppException;
 import org.apache.commons.lang3.exception.ExceptionUtils;
 
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -41,6 +47,86 @@ public class ChapterJsonlConverter {
         return jsonObjects;
     }
 
+    /**
+     * Reads chapters line by line, only lines with indexes within {@code [from..to]} are parsed,
+     * other lines are skipped on the byte level without decoding their text. The first line is always
+     * parsed, because it defines the format of the whole file.
+     * <p>
+     * The result keeps positions of the source: an element has the index of its line (blank lines are
+     * not counted), lines outside the window are {@code null}, and the list ends at {@code to}. A line within
+     * the window which can't be parsed fails the read.
+     *
+     * @param stream jsonl content, is not closed by the method
+     * @param from   index of the first line to parse, 0-based
+     * @param to     index of the last line to parse, inclusive
+     */
+    public List<Chapter> fromStream(@NonNull InputStream stream, int from, int to) {
+        var result = new ArrayList<Chapter>();
+        var input = stream instanceof BufferedInputStream ? stream : new BufferedInputStream(stream, 64 * 1024);
+        var buffer = new ByteArrayOutputStream(16 * 1024);
+
+        try {
+            int index = 0;
+            int lineNumber = 0;
+            while (index <= to) {
+                boolean inWindow = index == 0 || index >= from;
+                var line = inWindow ? readLine(input, buffer) : skipLine(input);
+                lineNumber++;
+                if (line == EOF) {
+                    break;
+                } else if (line == BLANK) {
+                    continue;
+                }
+
+                result.add(inWindow ? parse((String) line, lineNumber) : null);
+                index++;
+            }
+        } catch (IOException e) {
+            throw new AppException("Can't read chapters content", e);
+        }
+
+        if (result.isEmpty()) {
+            throw new AppException("Chapters content is missing");
+        }
+
+        return result;
+    }
+
+    /**
+     * Fills missing numbers by positions and splits raw values into title and text. Chapters are changed in
+     * place, so it's done once, right after parsing, and cached chapters are never changed afterward.
+     *
+     * @param chapters chapters of the file, elements outside the release window are {@code null}
+     */
+    public List<Chapter> normalize(List<Chapter> chapters) {
+        if (chapters.isEmpty() || Objects.isNull(chapters.getFirst())) {
+            return chapters;
+        }
+
+        boolean lackOfNumbers = Objects.isNull(chapters.getFirst().getNumber());
+        boolean rawMode = (Objects.isNull(chapters.getFirst().getTranslatedText()) &&
+                !chapters.getFirst().get(Chapter.VALUE, "").isBlank());
+
+        if (lackOfNumbers) {
+            for (int i = 0; i < chapters.size(); i++) {
+                if (Objects.nonNull(chapters.get(i))) {
+                    chapters.get(i).setNumber(i + 1);
+                }
+            }
+        }
+        if (rawMode) {
+            chapters.stream().filter(Objects::nonNull).forEach(chapter -> {
+                String value = chapter.get(Chapter.VALUE, "");
+                String[] result = value.split("\\R", 2);
+
+                chapter.setTranslatedTitle(result[0]);
+                chapter.setTranslatedText(result[1].replaceAll("\n", "\n  \n"));
+            });
+        }
+
+        return chapters;
+    }
+
     public <U> String toString(List<U> list) {
         return list.stream()
                 .map(o -> {
@@ -53,4 +139,53 @@ public class ChapterJsonlConverter {
                 .collect(Collectors.joining("\n"));
     }
 
+    /* ============= */
+
+    private static final Object EOF = new Object();
+    private static final Object BLANK = new Object();
+
+    /**
+     * A malformed line within the window fails the read, {@code null} elements only mean lines outside the window.
+     */
+    private Chapter parse(String line, int lineNumber) {
+        try {
+            return objectMapper.readValue(line, Chapter.class);
+        } catch (Exception e) {
+            log.error("Can't read object: line={}, content={}", lineNumber, line);
+            throw new AppException("Can't read chapter at line %s".formatted(lineNumber), e);
+        }
+    }
+
+    private static Object readLine(InputStream input, ByteArrayOutputStream buffer) throws IOException {
+        buffer.reset();
+        int b;
+        boolean blank = true;
+        while ((b = input.read()) != -1 && b != '\n') {
+            buffer.write(b);
+            blank &= Character.isWhitespace(b);
+        }
+
+        if (b == -1 && buffer.size() == 0) {
+            return EOF;
+        }
+
+        return blank ? BLANK : buffer.toString(StandardCharsets.UTF_8);
+    }
+
+    private static Object skipLine(InputStream input) throws IOException {
+        int b;
+        boolean blank = true;
+        boolean empty = true;
+        while ((b = input.read()) != -1 && b != '\n') {
+            empty = false;
+            blank &= Character.isWhitespace(b);
+        }
+
+        if (b == -1 && empty) {
+            return EOF;
+        }
+
+        return blank ? BLANK : Boolean.TRUE;
+    }
+
 }
@@ -1,5 +1,6 @@
 package machinum.image;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.NotEmpty;
 import jakarta.validation.constraints.NotNull;
@@ -20,6 +21,16 @@ public class Image {
     @NotNull
     @NotEmpty
     private byte[] data;
+    /**
+     * Key of the content in {@link ImageStorage}, it's empty for images which keep content in the table.
+     */
+    @JsonIgnore
+    private String storageKey;
+    private Long size;
+    /**
+     * SHA-256 of the content, the content of an image never changes.
+     */
+    private String contentHash;
     private LocalDateTime createdAt;
 
 }
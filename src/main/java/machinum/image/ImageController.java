@@ -7,10 +7,15 @@ import io.jooby.annotation.*;
 import lombok.Cleanup;
 import lombok.RequiredArgsConstructor;
 import lombok.SneakyThrows;
+import machinum.image.ImageVariantService.VariantSpec;
 import machinum.image.cover.CoverService;
 import org.apache.commons.io.IOUtils;
 
 import java.io.IOException;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
 import java.util.Objects;
 
 @Path("/api")
@@ -19,25 +24,74 @@ public class ImageController {
 
     public static final String PLACEHOLDER = "00000000-0000-0000-0000-000000000000";
 
+    /**
+     * Content of an image never changes, so it can be cached forever.
+     */
+    private static final String IMMUTABLE = "public, max-age=31536000, immutable";
+    private static final String PLACEHOLDER_CACHE = "public, max-age=86400";
+
     private final ImageRepository repository;
     private final CoverService coverService;
+    private final ImageVariantService variantService;
 
     public static ImageController_ imageController(Jooby jooby) {
         return new ImageController_(jooby.require(ImageRepository.class),
-                jooby.require(CoverService.class));
+                jooby.require(CoverService.class), jooby.require(ImageVariantService.class));
     }
 
+    /**
+     * @param width   maximal width of a resized variant, see {@link ImageVariantService}
+     * @param format  format of a resized variant, jpeg or png
+     * @param quality jpeg quality of a resized variant, from 10 to 100
+     */
     @SneakyThrows
     @GET("/images/{id}")
     public void image(@PathParam("id") String id,
+                      @QueryParam("w") Integer width,
+                      @QueryParam("format") String format,
+                      @QueryParam("q") Integer quality,
                       Context ctx) {
         if (isPlaceholder(id, ctx)) return;
 
-        var image = repository.findById(id);
+        VariantSpec spec = null;
+        if (Objects.nonNull(width) || Objects.nonNull(format) || Objects.nonNull(quality)) {
+            try {
+                spec = VariantSpec.of(width, format, quality);
+            } catch (IllegalArgumentException e) {
+                ctx.setResponseCode(StatusCode.BAD_REQUEST);
+                ctx.send(e.getMessage());
+                return;
+            }
+        }
+
+        // Content is streamed from the storage, it isn't loaded into the heap
+        var image = repository.findInfoById(id);
         if (image.isPresent()) {
             Image img = image.get();
+            ctx.setResponseHeader("Cache-Control", IMMUTABLE);
+            if (Objects.nonNull(img.getContentHash())) {
+                var etag = Objects.isNull(spec) ? "\"%s\"".formatted(img.getContentHash())
+                        : "\"%s-%s\"".formatted(img.getContentHash(), spec.key());
+                ctx.setResponseHeader("ETag", etag);
+                if (matches(ctx.header("If-None-Match").valueOrNull(), etag)) {
+                    ctx.send(StatusCode.NOT_MODIFIED);
+                    return;
+                }
+            }
+            if (Objects.nonNull(img.getCreatedAt())) {
+                ctx.setResponseHeader("Last-Modified", DateTimeFormatter.RFC_1123_DATE_TIME
+                        .format(img.getCreatedAt().atZone(ZoneId.systemDefault()).withZoneSameInstant(ZoneOffset.UTC)));
+            }
+            if (Objects.nonNull(spec)) {
+                ctx.setResponseHeader("Content-Type", spec.contentType());
+                ctx.send(variantService.open(img, spec));
+                return;
+            }
             ctx.setResponseHeader("Content-Type", img.getContentType());
-            ctx.send(img.getData());
+            if (Objects.nonNull(img.getSize())) {
+                ctx.setResponseLength(img.getSize());
+            }
+            ctx.send(repository.openData(img));
         } else {
             ctx.setResponseCode(StatusCode.NOT_FOUND);
         }
@@ -72,12 +126,27 @@ public class ImageController {
 
     /* ============= */
 
+    /**
+     * @param ifNoneMatch value of the If-None-Match header, e.g. {@code "a", W/"b"}
+     */
+    static boolean matches(String ifNoneMatch, String etag) {
+        if (Objects.isNull(ifNoneMatch) || ifNoneMatch.isBlank()) {
+            return false;
+        }
+
+        return Arrays.stream(ifNoneMatch.split(","))
+                .map(String::trim)
+                .map(value -> value.startsWith("W/") ? value.substring(2) : value)
+                .anyMatch(value -> value.equals("*") || value.equals(etag));
+    }
+
     private boolean isPlaceholder(String id, Context ctx) throws IOException {
         if (PLACEHOLDER.equals(id)) {
             @Cleanup
             var resourceAsStream = ImageController.class.getResourceAsStream("/web/image/cover.jpg");
             if (Objects.nonNull(resourceAsStream)) {
                 ctx.setResponseHeader("Content-Type", "image/jpg");
+                ctx.setResponseHeader("Cache-Control", PLACEHOLDER_CACHE);
                 ctx.send(IOUtils.toByteArray(resourceAsStream));
 
                 return true;
@@ -3,19 +3,34 @@ package machinum.image;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import machinum.exception.AppException;
+import machinum.image.cover.CoverCache;
 import org.jdbi.v3.core.Jdbi;
 
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.UUID;
 import java.util.function.Function;
 
 import static machinum.util.Util.saveSortOrder;
+import static machinum.util.Util.sha256;
 
 @Slf4j
 @RequiredArgsConstructor
 public class ImageRepository {
 
+    /**
+     * Content is read from the storage, only images created before the storage keep it in the table.
+     */
+    private static final String COLUMNS = """
+            id, name, content_type, storage_key, size, content_hash, created_at, CASE WHEN storage_key IS NULL THEN data END AS data""";
+    private static final String INFO_COLUMNS = "id, name, content_type, storage_key, size, content_hash, created_at";
+
     private final Jdbi jdbi;
+    private final ImageStorage storage;
 
     public Image getById(String id) {
         return findById(id)
@@ -23,31 +38,169 @@ public class ImageRepository {
     }
 
     public Optional<Image> findById(String id) {
-        return jdbi.withHandle(handle -> handle.createQuery("SELECT * FROM images WHERE id = :id")
+        return jdbi.withHandle(handle -> handle.createQuery("SELECT %s FROM images WHERE id = :id".formatted(COLUMNS))
+                .bind("id", id)
+                .mapToBean(Image.class)
+                .findFirst())
+                .map(this::withData);
+    }
+
+    /**
+     * @return image without content, see {@link #openData}
+     */
+    public Optional<Image> findInfoById(String id) {
+        return jdbi.withHandle(handle -> handle.createQuery("SELECT %s FROM images WHERE id = :id".formatted(INFO_COLUMNS))
                 .bind("id", id)
                 .mapToBean(Image.class)
                 .findFirst());
     }
 
     public List<Image> findByIds(List<String> ids) {
-        List<Image> result = jdbi.withHandle(handle -> handle.createQuery("SELECT * FROM images WHERE id in (<ids>)")
+        List<Image> result = jdbi.withHandle(handle -> handle.createQuery("SELECT %s FROM images WHERE id in (<ids>)".formatted(COLUMNS))
                 .bindList("ids", ids)
                 .mapToBean(Image.class)
                 .list());
 
-        return saveSortOrder(ids, result, Image::getId);
+        return saveSortOrder(ids, result.stream().map(this::withData).toList(), Image::getId);
+    }
+
+    /**
+     * @return images which are removed together with the book by {@code trigger_delete_images}, with hashes
+     * of their content
+     */
+    public List<Image> findInfoByBookId(String bookId) {
+        return jdbi.withHandle(handle -> handle.createQuery("""
+                        SELECT id, storage_key, 
+                            COALESCE(content_hash, encode(sha256(data), 'hex')) AS content_hash 
+                        FROM images 
+                        WHERE id IN (SELECT image_id FROM books WHERE id = :bookId)
+                        """)
+                .bind("bookId", bookId)
+                .mapToBean(Image.class)
+                .list());
+    }
+
+    /**
+     * Removes content of images whose rows are removed: the content itself, its resized variants and covers
+     * generated from it. A failed removal is logged and skipped, the rows are removed anyway.
+     */
+    public void deleteContent(List<Image> images) {
+        for (var image : images) {
+            try {
+                if (Objects.nonNull(image.getStorageKey())) {
+                    storage.delete(image.getStorageKey());
+                }
+                storage.deleteAll(ImageVariantService.prefix(image.getId()));
+                if (Objects.nonNull(image.getContentHash())) {
+                    storage.deleteAll(CoverCache.prefix(image.getContentHash()));
+                }
+                log.debug("Removed content of image: id={}", image.getId());
+            } catch (Exception e) {
+                log.warn("Can't remove content of image, it's left in storage: id={}", image.getId(), e);
+            }
+        }
     }
 
+    /**
+     * @return stream of the content, so it isn't loaded into the heap
+     */
+    public InputStream openData(Image image) {
+        if (Objects.nonNull(image.getStorageKey())) {
+            return storage.open(image.getStorageKey());
+        }
+
+        var data = jdbi.withHandle(handle -> handle.createQuery("SELECT data FROM images WHERE id = :id")
+                .bind("id", image.getId())
+                .mapTo(byte[].class)
+                .findFirst())
+                .orElseThrow(() -> new AppException("Image for given id is not found: " + image.getId()));
+
+        return new ByteArrayInputStream(data);
+    }
+
+    /**
+     * The content is stored first, so a row never points to a missing content. The hash of the content is
+     * calculated once here, it's the ETag of the image.
+     */
     public String create(Image image) {
+        var id = UUID.randomUUID().toString();
+        var storageKey = storageKey(id);
+        storage.put(storageKey, image.getData(), image.getContentType());
+
         return jdbi.withHandle(handle -> handle.createUpdate("""
-                            INSERT INTO images (name, content_type, data) VALUES (:name, :contentType, :data) RETURNING id
+                            INSERT INTO images (id, name, content_type, storage_key, size, content_hash) 
+                            VALUES (:id, :name, :contentType, :storageKey, :size, :contentHash) 
+                            RETURNING id
                         """)
                 .bindBean(image)
+                .bind("id", id)
+                .bind("storageKey", storageKey)
+                .bind("size", image.getData().length)
+                .bind("contentHash", sha256(image.getData()))
                 .executeAndReturnGeneratedKeys("id")
                 .mapTo(String.class)
                 .one());
     }
 
+    /**
+     * Moves content of images which are created before the storage out of the table, and calculates
+     * missing content hashes. An image which fails is logged and skipped for the rest of the run, so it doesn't
+     * stop the others.
+     *
+     * @return number of moved images
+     */
+    public int moveToStorage(int batchSize) {
+        var moved = 0;
+        var failed = new LinkedHashSet<String>();
+        while (true) {
+            var images = jdbi.withHandle(handle -> handle.createQuery("""
+                            SELECT id, content_type, storage_key 
+                            FROM images 
+                            WHERE ((storage_key IS NULL AND data IS NOT NULL) OR (storage_key IS NOT NULL AND content_hash IS NULL)) 
+                                AND id <> ALL(:failed) 
+                            LIMIT :limit
+                            """)
+                    .bindArray("failed", String.class, failed)
+                    .bind("limit", batchSize)
+                    .mapToBean(Image.class)
+                    .list());
+            if (images.isEmpty()) {
+                if (!failed.isEmpty()) {
+                    log.warn("Images are left in the table: {}", failed);
+                }
+                return moved;
+            }
+
+            for (var image : images) {
+                var storageKey = Objects.requireNonNullElseGet(image.getStorageKey(), () -> storageKey(image.getId()));
+                try (var data = openData(image)) {
+                    var bytes = data.readAllBytes();
+                    if (Objects.isNull(image.getStorageKey())) {
+                        storage.put(storageKey, bytes, image.getContentType());
+                    }
+                    jdbi.useHandle(handle -> handle.createUpdate("""
+                                    UPDATE images SET 
+                                        storage_key = :storageKey, 
+                                        size = :size, 
+                                        content_hash = :contentHash, 
+                                        data = NULL 
+                                    WHERE id = :id
+                                    """)
+                            .bind("id", image.getId())
+                            .bind("storageKey", storageKey)
+                            .bind("size", bytes.length)
+                            .bind("contentHash", sha256(bytes))
+                            .execute());
+                    moved++;
+                } catch (Exception e) {
+                    log.warn("Failed to move image to storage, it's skipped: id={}", image.getId(), e);
+                    failed.add(image.getId());
+                }
+            }
+            log.info("Moved images to storage: {}", moved);
+        }
+    }
+
     public void updateCoverId(String originImageId, String coverImageId) {
         jdbi.withHandle(handle -> handle.createUpdate(//language=sql
                         """
@@ -88,4 +241,18 @@ public class ImageRepository {
         });
     }
 
+    /* ============= */
+
+    private Image withData(Image image) {
+        if (Objects.isNull(image.getData()) && Objects.nonNull(image.getStorageKey())) {
+            image.setData(storage.read(image.getStorageKey()));
+        }
+
+        return image;
+    }
+
+    private String storageKey(String id) {
+        return "images/%s".formatted(id);
+    }
+
 }
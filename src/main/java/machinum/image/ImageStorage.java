@@ -0,0 +1,155 @@
+package machinum.image;
+
+import lombok.RequiredArgsConstructor;
+import lombok.SneakyThrows;
+import lombok.extern.slf4j.Slf4j;
+import machinum.exception.AppException;
+import machinum.minio.MinioService;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Comparator;
+import java.util.Map;
+
+/**
+ * Storage of image content, the database keeps only metadata of images and the key of the content.
+ */
+public interface ImageStorage {
+
+    void put(String key, byte[] data, String contentType);
+
+    boolean exists(String key);
+
+    /**
+     * @return stream of the content, it must be closed by the caller
+     * @throws AppException if the content is not found
+     */
+    InputStream open(String key);
+
+    @SneakyThrows
+    default byte[] read(String key) {
+        try (var stream = open(key)) {
+            return stream.readAllBytes();
+        }
+    }
+
+    void delete(String key);
+
+    /**
+     * Removes all content whose keys start with the prefix, e.g. all variants of an image.
+     */
+    void deleteAll(String prefix);
+
+    @Slf4j
+    @RequiredArgsConstructor
+    class MinioImageStorage implements ImageStorage {
+
+        private final MinioService minioService;
+
+        @Override
+        public void put(String key, byte[] data, String contentType) {
+            minioService.createFile(key, data, contentType, Map.of());
+        }
+
+        @Override
+        public boolean exists(String key) {
+            return minioService.fileExists(key);
+        }
+
+        @Override
+        public InputStream open(String key) {
+            return minioService.downloadFile(key);
+        }
+
+        @Override
+        public void delete(String key) {
+            minioService.removeFile(key);
+        }
+
+        @Override
+        public void deleteAll(String prefix) {
+            minioService.removeFiles(prefix);
+        }
+
+    }
+
+    /**
+     * Keeps images in a folder, e.g. for a single node without MinIO.
+     */
+    @Slf4j
+    @RequiredArgsConstructor
+    class LocalImageStorage implements ImageStorage {
+
+        private final Path folder;
+
+        @Override
+        @SneakyThrows
+        public void put(String key, byte[] data, String contentType) {
+            var file = resolve(key);
+            Files.createDirectories(file.getParent());
+            // A reader never sees a partially written file
+            var temp = Files.createTempFile(file.getParent(), "image_", ".tmp");
+            try {
+                Files.write(temp, data);
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+            log.debug("Stored image: key={}, size={}", key, data.length);
+        }
+
+        @Override
+        public boolean exists(String key) {
+            return Files.exists(resolve(key));
+        }
+
+        @Override
+        @SneakyThrows
+        public InputStream open(String key) {
+            var file = resolve(key);
+            if (!Files.exists(file)) {
+                throw new AppException("Image content is not found: %s", key);
+            }
+
+            return Files.newInputStream(file);
+        }
+
+        @Override
+        @SneakyThrows
+        public void delete(String key) {
+            Files.deleteIfExists(resolve(key));
+        }
+
+        /**
+         * Keys are paths, so a prefix which ends with {@code /} removes the folder.
+         */
+        @Override
+        @SneakyThrows
+        public void deleteAll(String prefix) {
+            var target = resolve(prefix);
+            if (!Files.isDirectory(target)) {
+                Files.deleteIfExists(target);
+                return;
+            }
+
+            try (var files = Files.walk(target)) {
+                for (var file : files.sorted(Comparator.reverseOrder()).toList()) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+
+        private Path resolve(String key) {
+            var file = folder.resolve(key).normalize();
+            if (!file.startsWith(folder.normalize())) {
+                throw new AppException("Invalid image key: %s", key);
+            }
+
+            return file;
+        }
+
+    }
+
+}
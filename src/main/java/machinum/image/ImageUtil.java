@@ -1,9 +1,12 @@
 package machinum.image;
 
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
 import java.awt.image.BufferedImage;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
-import java.util.Iterator;
+import java.util.Objects;
 import javax.imageio.IIOImage;
 import javax.imageio.ImageIO;
 import javax.imageio.ImageWriteParam;
@@ -12,36 +15,175 @@ import javax.imageio.stream.MemoryCacheImageOutputStream;
 import lombok.AccessLevel;
 import lombok.NoArgsConstructor;
 import lombok.SneakyThrows;
+import lombok.extern.slf4j.Slf4j;
+import machinum.exception.AppException;
 
+@Slf4j
 @NoArgsConstructor(access = AccessLevel.PRIVATE)
 public class ImageUtil {
 
+  /**
+   * Jpeg quality which is tried first, a smaller quality is searched only for a larger image.
+   */
+  private static final float MAX_QUALITY = 0.9f;
+  private static final float MIN_QUALITY = 0.5f;
+  private static final int QUALITY_STEPS = 4;
+  private static final int MAX_DOWNSCALES = 3;
+
+  /**
+   * Encodes the image to jpeg of at most the given size.
+   * <p>
+   * The image is decoded once, the quality is searched by bisection between {@link #MIN_QUALITY} and
+   * {@link #MAX_QUALITY}, and only when even the minimal quality doesn't fit, the image is scaled down by
+   * the estimated ratio, so at most a few dozen encodes are done.
+   *
+   * @return the image itself if it already fits, otherwise the largest found jpeg which fits, or the smallest
+   * one if nothing fits
+   */
   @SneakyThrows
   public static byte[] compressImage(byte[] imageBytes, int maxSize) {
     if (imageBytes.length <= maxSize) {
       return imageBytes;
     }
 
-    BufferedImage image = ImageIO.read(new ByteArrayInputStream(imageBytes));
+    BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(imageBytes));
+    if (Objects.isNull(decoded)) {
+      throw new AppException("Image can't be decoded");
+    }
+
+    BufferedImage image = toRgb(decoded);
+    ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+    ByteArrayOutputStream baos = new ByteArrayOutputStream(maxSize);
+    try {
+      byte[] result = fitQuality(writer, baos, image, maxSize);
+      for (int i = 0; i < MAX_DOWNSCALES && result.length > maxSize; i++) {
+        // Size of a jpeg is roughly proportional to the number of pixels
+        double scale = Math.min(0.9, Math.sqrt((double) maxSize / result.length) * 0.95);
+        image = resize(image, (int) (image.getWidth() * scale), (int) (image.getHeight() * scale));
+        result = fitQuality(writer, baos, image, maxSize);
+      }
+
+      if (result.length > maxSize) {
+        log.warn("Image can't be compressed to {} bytes, size is {} bytes", maxSize, result.length);
+      }
+
+      return result;
+    } finally {
+      writer.dispose();
+    }
+  }
+
+  /**
+   * Scales the image down to fit the box keeping its proportions, a smaller image is returned as is.
+   * Transparency is kept, so a png variant doesn't get a black background.
+   */
+  public static BufferedImage resize(BufferedImage original, int maxWidth, int maxHeight) {
+    int originalWidth = original.getWidth();
+    int originalHeight = original.getHeight();
+
+    if (originalWidth <= maxWidth && originalHeight <= maxHeight) {
+      return original;
+    }
+
+    double scale = Math.min((double) maxWidth / originalWidth, (double) maxHeight / originalHeight);
+    int newWidth = Math.max(1, (int) (originalWidth * scale));
+    int newHeight = Math.max(1, (int) (originalHeight * scale));
+
+    int type = original.getColorModel().hasAlpha() ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+    BufferedImage resized = new BufferedImage(newWidth, newHeight, type);
+    Graphics2D g2d = resized.createGraphics();
+    g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+    g2d.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+    g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+    g2d.drawImage(original, 0, 0, newWidth, newHeight, null);
+    g2d.dispose();
+
+    return resized;
+  }
+
+  /**
+   * @param format  jpeg or png
+   * @param quality compression quality of jpeg from 0 to 1, it's ignored for png
+   */
+  @SneakyThrows
+  public static byte[] encode(BufferedImage image, String format, float quality) {
     ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    if ("png".equals(format)) {
+      ImageIO.write(image, "png", baos);
+      return baos.toByteArray();
+    }
 
-    Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName("jpg");
-    ImageWriter writer = writers.next();
-    ImageWriteParam param = writer.getDefaultWriteParam();
+    ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+    try {
+      // Jpeg doesn't support alpha channel
+      return writeJpeg(writer, baos, toRgb(image), quality);
+    } finally {
+      writer.dispose();
+    }
+  }
 
-    param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
-    param.setCompressionQuality(0.9f);
+  /**
+   * @return jpeg of {@link #MAX_QUALITY} if it fits, otherwise the best quality which fits, or the jpeg of
+   * {@link #MIN_QUALITY} which doesn't fit
+   */
+  private static byte[] fitQuality(ImageWriter writer, ByteArrayOutputStream baos, BufferedImage image,
+      int maxSize) {
+    byte[] best = writeJpeg(writer, baos, image, MAX_QUALITY);
+    if (best.length <= maxSize) {
+      return best;
+    }
 
-    writer.setOutput(new MemoryCacheImageOutputStream(baos));
-    writer.write(null, new IIOImage(image, null, null), param);
-    writer.dispose();
+    best = writeJpeg(writer, baos, image, MIN_QUALITY);
+    if (best.length > maxSize) {
+      return best;
+    }
 
-    byte[] result = baos.toByteArray();
-    if (result.length > maxSize) {
-      return compressImage(result, maxSize);
-    } else {
-      return result;
+    float low = MIN_QUALITY;
+    float high = MAX_QUALITY;
+    for (int i = 0; i < QUALITY_STEPS; i++) {
+      float quality = (low + high) / 2;
+      byte[] result = writeJpeg(writer, baos, image, quality);
+      if (result.length <= maxSize) {
+        best = result;
+        low = quality;
+      } else {
+        high = quality;
+      }
     }
+
+    return best;
+  }
+
+  /**
+   * The writer and the buffer are reused between encodes.
+   */
+  @SneakyThrows
+  private static byte[] writeJpeg(ImageWriter writer, ByteArrayOutputStream baos, BufferedImage image,
+      float quality) {
+    baos.reset();
+    try (var output = new MemoryCacheImageOutputStream(baos)) {
+      ImageWriteParam param = writer.getDefaultWriteParam();
+      param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+      param.setCompressionQuality(quality);
+
+      writer.setOutput(output);
+      writer.write(null, new IIOImage(image, null, null), param);
+    }
+
+    return baos.toByteArray();
+  }
+
+  private static BufferedImage toRgb(BufferedImage image) {
+    if (image.getType() == BufferedImage.TYPE_INT_RGB || !image.getColorModel().hasAlpha()) {
+      return image;
+    }
+
+    BufferedImage rgb = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_RGB);
+    Graphics2D g2d = rgb.createGraphics();
+    g2d.drawImage(image, 0, 0, Color.WHITE, null);
+    g2d.dispose();
+
+    return rgb;
   }
 
 }
@@ -0,0 +1,162 @@
+package machinum.image;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import machinum.exception.AppException;
+
+import javax.imageio.ImageIO;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Resized variants of images, e.g. thumbnails of covers in the list of books, or covers which fit the size
+ * limit of Telegram.
+ * <p>
+ * A variant is rendered once from the original and is stored next to it under
+ * {@code variants/<imageId>/<spec>}, later requests are served from the storage. Content of an image never
+ * changes, so a stored variant never gets stale.
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class ImageVariantService {
+
+    /**
+     * Widths are snapped to a small set, so an arbitrary width can't fill the storage with variants.
+     */
+    static final int[] WIDTHS = {64, 128, 256, 320, 480, 640, 960, 1280, 1920};
+
+    private final Map<String, Object> locks = new ConcurrentHashMap<>();
+
+    private final ImageRepository repository;
+    private final ImageStorage storage;
+
+    /**
+     * @return prefix of all variants of the image, e.g. to remove them together with the image
+     */
+    public static String prefix(String imageId) {
+        return "variants/%s/".formatted(imageId);
+    }
+
+    /**
+     * @return stream of the stored variant, it's rendered on the first request
+     */
+    public InputStream open(Image image, VariantSpec spec) {
+        var key = prefix(image.getId()) + spec.key();
+        renderOnce(key, spec.contentType(), () -> render(image, spec));
+
+        return storage.open(key);
+    }
+
+    /**
+     * @param image image with the content
+     * @return content of the image if it fits, otherwise the stored jpeg of at most the given size, see
+     * {@link ImageUtil#compressImage}
+     */
+    public byte[] fit(Image image, int maxSize) {
+        if (image.getData().length <= maxSize) {
+            return image.getData();
+        }
+
+        var key = prefix(image.getId()) + "max-%d".formatted(maxSize);
+        renderOnce(key, "image/jpeg", () -> ImageUtil.compressImage(image.getData(), maxSize));
+
+        return storage.read(key);
+    }
+
+    /* ============= */
+
+    private void renderOnce(String key, String contentType, Supplier<byte[]> renderer) {
+        if (storage.exists(key)) {
+            return;
+        }
+
+        // Concurrent requests of the same variant render it only once
+        synchronized (locks.computeIfAbsent(key, k -> new Object())) {
+            try {
+                if (!storage.exists(key)) {
+                    storage.put(key, renderer.get(), contentType);
+                }
+            } finally {
+                locks.remove(key);
+            }
+        }
+    }
+
+    private byte[] render(Image image, VariantSpec spec) {
+        try (var data = repository.openData(image)) {
+            var original = ImageIO.read(data);
+            if (Objects.isNull(original)) {
+                throw new AppException("Image can't be decoded: " + image.getId());
+            }
+            var resized = ImageUtil.resize(original, spec.width(), Integer.MAX_VALUE);
+            log.debug("Rendered image variant: id={}, spec={}", image.getId(), spec.key());
+
+            return ImageUtil.encode(resized, spec.format(), spec.quality() / 100f);
+        } catch (AppException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new AppException("Failed to render image variant: " + image.getId(), e);
+        }
+    }
+
+    /**
+     * @param width   maximal width of the variant, a smaller image isn't upscaled
+     * @param format  jpeg or png
+     * @param quality jpeg quality from 10 to 100
+     */
+    public record VariantSpec(int width, String format, int quality) {
+
+        public static final String DEFAULT_FORMAT = "jpeg";
+        public static final int DEFAULT_QUALITY = 85;
+
+        /**
+         * @return spec from request parameters, missing values are defaulted
+         * @throws IllegalArgumentException if a value is not supported
+         */
+        public static VariantSpec of(Integer width, String format, Integer quality) {
+            var resolvedFormat = Objects.requireNonNullElse(format, DEFAULT_FORMAT).toLowerCase();
+            if ("jpg".equals(resolvedFormat)) {
+                resolvedFormat = DEFAULT_FORMAT;
+            }
+            if (!DEFAULT_FORMAT.equals(resolvedFormat) && !"png".equals(resolvedFormat)) {
+                throw new IllegalArgumentException("Unsupported image format: " + format);
+            }
+
+            var resolvedQuality = Objects.requireNonNullElse(quality, DEFAULT_QUALITY);
+            if (resolvedQuality < 10 || resolvedQuality > 100) {
+                throw new IllegalArgumentException("Quality must be from 10 to 100: " + quality);
+            }
+
+            var resolvedWidth = Objects.requireNonNullElse(width, WIDTHS[WIDTHS.length - 1]);
+            if (resolvedWidth <= 0) {
+                throw new IllegalArgumentException("Width must be positive: " + width);
+            }
+
+            return new VariantSpec(snap(resolvedWidth), resolvedFormat, resolvedQuality);
+        }
+
+        public String key() {
+            return "png".equals(format) ? "w%d-png".formatted(width) : "w%d-jpeg-q%d".formatted(width, quality);
+        }
+
+        public String contentType() {
+            return "png".equals(format) ? "image/png" : "image/jpeg";
+        }
+
+        /**
+         * @return the smallest allowed width which isn't less than the requested one
+         */
+        private static int snap(int width) {
+            return Arrays.stream(WIDTHS)
+                    .filter(allowed -> allowed >= width)
+                    .findFirst()
+                    .orElse(WIDTHS[WIDTHS.length - 1]);
+        }
+
+    }
+
+}
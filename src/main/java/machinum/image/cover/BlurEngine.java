@@ -0,0 +1,158 @@
+package machinum.image.cover;
+
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.stream.IntStream;
+
+/**
+ * Gaussian blur approximated by three box blurs.
+ * <p>
+ * Every box blur is split into a horizontal and a vertical pass with running sums over the {@code int[]} pixels,
+ * so the cost per pixel doesn't depend on the radius. Rows of the horizontal pass and column strips of
+ * the vertical pass are processed in parallel for large images.
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public class BlurEngine {
+
+    private static final int PASSES = 3;
+
+    /**
+     * Columns of the vertical pass are processed in strips, so every thread reads rows sequentially.
+     */
+    private static final int STRIP_WIDTH = 64;
+
+    private static final int PARALLEL_THRESHOLD = 256 * 256;
+
+    /**
+     * @param radius radius of the gaussian kernel, sigma is a third of it
+     * @return new blurred image, edges are extended by their own pixels, the image itself is returned for
+     * a non-positive radius
+     */
+    public static BufferedImage gaussian(BufferedImage image, int radius) {
+        if (radius <= 0) {
+            return image;
+        }
+
+        int width = image.getWidth();
+        int height = image.getHeight();
+        var type = image.getColorModel().hasAlpha() ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+        var result = new BufferedImage(width, height, type);
+        int[] pixels = ((DataBufferInt) result.getRaster().getDataBuffer()).getData();
+        image.getRGB(0, 0, width, height, pixels, 0, width);
+
+        int[] temp = new int[pixels.length];
+        boolean parallel = pixels.length >= PARALLEL_THRESHOLD;
+        for (int boxRadius : boxRadii(radius / 3.0)) {
+            if (boxRadius > 0) {
+                horizontal(pixels, temp, width, height, boxRadius, parallel);
+                vertical(temp, pixels, width, height, boxRadius, parallel);
+            }
+        }
+
+        return result;
+    }
+
+    /* ============= */
+
+    /**
+     * @return radii of boxes whose consecutive blurs approximate the gaussian with the given sigma
+     */
+    static int[] boxRadii(double sigma) {
+        double idealWidth = Math.sqrt((12 * sigma * sigma / PASSES) + 1);
+        int lower = (int) Math.floor(idealWidth);
+        if (lower % 2 == 0) {
+            lower--;
+        }
+        int upper = lower + 2;
+
+        double idealCount = (12 * sigma * sigma - PASSES * lower * lower - 4 * PASSES * lower - 3 * PASSES)
+                / (-4.0 * lower - 4);
+        long lowerCount = Math.round(idealCount);
+
+        int[] result = new int[PASSES];
+        for (int i = 0; i < PASSES; i++) {
+            result[i] = ((i < lowerCount ? lower : upper) - 1) / 2;
+        }
+
+        return result;
+    }
+
+    private static void horizontal(int[] source, int[] target, int width, int height, int radius, boolean parallel) {
+        var rows = IntStream.range(0, height);
+        (parallel ? rows.parallel() : rows).forEach(y -> {
+            int row = y * width;
+            int size = 2 * radius + 1;
+            int a = 0, r = 0, g = 0, b = 0;
+            for (int i = -radius; i <= radius; i++) {
+                int pixel = source[row + clamp(i, width)];
+                a += pixel >>> 24;
+                r += (pixel >> 16) & 0xFF;
+                g += (pixel >> 8) & 0xFF;
+                b += pixel & 0xFF;
+            }
+
+            for (int x = 0; x < width; x++) {
+                target[row + x] = pack(a, r, g, b, size);
+
+                int removed = source[row + Math.max(x - radius, 0)];
+                int added = source[row + Math.min(x + radius + 1, width - 1)];
+                a += (added >>> 24) - (removed >>> 24);
+                r += ((added >> 16) & 0xFF) - ((removed >> 16) & 0xFF);
+                g += ((added >> 8) & 0xFF) - ((removed >> 8) & 0xFF);
+                b += (added & 0xFF) - (removed & 0xFF);
+            }
+        });
+    }
+
+    private static void vertical(int[] source, int[] target, int width, int height, int radius, boolean parallel) {
+        var strips = IntStream.range(0, (width + STRIP_WIDTH - 1) / STRIP_WIDTH);
+        (parallel ? strips.parallel() : strips).forEach(strip -> {
+            int from = strip * STRIP_WIDTH;
+            int columns = Math.min(STRIP_WIDTH, width - from);
+            int size = 2 * radius + 1;
+            int[] a = new int[columns];
+            int[] r = new int[columns];
+            int[] g = new int[columns];
+            int[] b = new int[columns];
+            for (int i = -radius; i <= radius; i++) {
+                int row = clamp(i, height) * width + from;
+                for (int x = 0; x < columns; x++) {
+                    int pixel = source[row + x];
+                    a[x] += pixel >>> 24;
+                    r[x] += (pixel >> 16) & 0xFF;
+                    g[x] += (pixel >> 8) & 0xFF;
+                    b[x] += pixel & 0xFF;
+                }
+            }
+
+            for (int y = 0; y < height; y++) {
+                int row = y * width + from;
+                int removedRow = Math.max(y - radius, 0) * width + from;
+                int addedRow = Math.min(y + radius + 1, height - 1) * width + from;
+                for (int x = 0; x < columns; x++) {
+                    target[row + x] = pack(a[x], r[x], g[x], b[x], size);
+
+                    int removed = source[removedRow + x];
+                    int added = source[addedRow + x];
+                    a[x] += (added >>> 24) - (removed >>> 24);
+                    r[x] += ((added >> 16) & 0xFF) - ((removed >> 16) & 0xFF);
+                    g[x] += ((added >> 8) & 0xFF) - ((removed >> 8) & 0xFF);
+                    b[x] += (added & 0xFF) - (removed & 0xFF);
+                }
+            }
+        });
+    }
+
+    private static int clamp(int index, int length) {
+        return Math.min(Math.max(index, 0), length - 1);
+    }
+
+    private static int pack(int a, int r, int g, int b, int size) {
+        int half = size / 2;
+        return ((a + half) / size) << 24 | ((r + half) / size) << 16 | ((g + half) / size) << 8 | ((b + half) / size);
+    }
+
+}
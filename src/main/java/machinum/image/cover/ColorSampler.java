@@ -7,15 +7,26 @@ import lombok.NoArgsConstructor;
 
 import java.awt.*;
 import java.awt.image.BufferedImage;
-import java.util.HashMap;
-import java.util.Map;
-
-import static machinum.image.cover.BrandMark.CornerPosition.TOP_LEFT;
-import static machinum.image.cover.BrandMark.CornerPosition.TOP_RIGHT;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 @NoArgsConstructor(access = AccessLevel.PRIVATE)
 public class ColorSampler {
 
+    /**
+     * Every second pixel of every second row is sampled.
+     */
+    private static final int STEP = 2;
+    private static final int FALLBACK_COLOR = 0x808080;
+
+    /**
+     * Buffers are shared between extractions instead of threads, covers are rendered on virtual threads which
+     * are created per task. The pool holds as many buffers as extractions ever ran at once, about 340 KB each.
+     */
+    private static final Queue<Histograms> POOL = new ConcurrentLinkedQueue<>();
+
     public static Color calculateTextColor(Color backgroundColor, boolean isTitle) {
         double luminance = calculateLuminance(backgroundColor);
 
@@ -70,23 +81,49 @@ public class ColorSampler {
         return 0.2126 * r + 0.7152 * g + 0.0722 * b;
     }
 
+    /**
+     * Colors of the whole image and of the top corners are counted in one pass, see {@link Histograms}.
+     */
     public static ColorPalette extract(BufferedImage image) {
-        Map<Integer, Integer> colorCount = getColorCounts(image, 0, 0, image.getWidth(), image.getHeight());
-
-        int dominantRgb = getDominantColor(colorCount);
-
-        Color dominant = new Color(dominantRgb);
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int regionWidth = width / 4;
+        int regionHeight = height / 4;
+        int rightStart = width - regionWidth;
+
+        var histograms = Objects.requireNonNullElseGet(POOL.poll(), Histograms::new).reset(width);
+        try {
+            int[] row = histograms.row;
+            for (int y = 0; y < height; y += STEP) {
+                image.getRGB(0, y, width, 1, row, 0, width);
+                boolean top = y < regionHeight;
+                for (int x = 0; x < width; x += STEP) {
+                    int rgb = row[x];
+                    int bucket = Histograms.bucket(rgb);
+                    histograms.all.add(bucket, rgb);
+                    if (top && x < regionWidth) {
+                        histograms.topLeft.add(bucket, rgb);
+                    }
+                    if (top && x >= rightStart) {
+                        histograms.topRight.add(bucket, rgb);
+                    }
+                }
+            }
 
-        Color topLeft = getDominantColorByRegion(image, TOP_LEFT);
-        Color topRight = getDominantColorByRegion(image, TOP_RIGHT);
+            Color dominant = new Color(histograms.all.dominant());
+            Color topLeft = new Color(histograms.topLeft.dominant());
+            Color topRight = new Color(histograms.topRight.dominant());
 
-        return ColorPalette.builder()
-                .dominant(dominant)
-                .topLeftColor(topLeft)
-                .topRightColor(topRight)
-                .darkVariant(darken(dominant, 0.3f))
-                .lightVariant(lighten(dominant, 0.3f))
-                .build();
+            return ColorPalette.builder()
+                    .dominant(dominant)
+                    .topLeftColor(topLeft)
+                    .topRightColor(topRight)
+                    .darkVariant(darken(dominant, 0.3f))
+                    .lightVariant(lighten(dominant, 0.3f))
+                    .build();
+        } finally {
+            POOL.offer(histograms);
+        }
     }
 
     public static Color darken(Color color, float factor) {
@@ -117,43 +154,87 @@ public class ColorSampler {
         return "#" + Integer.toHexString(color.getRGB()).substring(2);
     }
 
-    private static Color getDominantColorByRegion(BufferedImage image, BrandMark.CornerPosition position) {
-        int width = image.getWidth();
-        int height = image.getHeight();
-        int regionWidth = width / 4;
-        int regionHeight = height / 4;
-        int startX = 0;
-        int startY = switch (position) {
-            case TOP_LEFT -> 0;
-            case TOP_RIGHT -> {
-                startX = width - regionWidth;
-                yield 0;
+    /**
+     * Histograms of the whole image and of the top corners, colors are quantized to 4 bits per channel.
+     */
+    private static final class Histograms {
+
+        private static final int BITS = 4;
+        private static final int SHIFT = 8 - BITS;
+        private static final int MASK = (1 << BITS) - 1;
+        private static final int BUCKETS = 1 << (3 * BITS);
+
+        private final Region all = new Region();
+        private final Region topLeft = new Region();
+        private final Region topRight = new Region();
+        private int[] row = new int[0];
+
+        private static int bucket(int rgb) {
+            return ((rgb >> (16 + SHIFT)) & MASK) << (2 * BITS)
+                    | ((rgb >> (8 + SHIFT)) & MASK) << BITS
+                    | ((rgb >> SHIFT) & MASK);
+        }
+
+        private Histograms reset(int width) {
+            all.clear();
+            topLeft.clear();
+            topRight.clear();
+            if (row.length < width) {
+                row = new int[width];
             }
-        };
 
-        Map<Integer, Integer> regionColorCount = getColorCounts(image, startX, startY, regionWidth, regionHeight);
-        int dominantRgb = getDominantColor(regionColorCount);
-        return new Color(dominantRgb);
-    }
+            return this;
+        }
 
-    private static int getDominantColor(Map<Integer, Integer> colorCount) {
-        return colorCount.entrySet().stream()
-                .max(Map.Entry.comparingByValue())
-                .map(Map.Entry::getKey)
-                .orElse(0x808080);
     }
 
-    private static Map<Integer, Integer> getColorCounts(BufferedImage image, int startX, int startY, int width, int height) {
-        Map<Integer, Integer> colorCount = new HashMap<>();
-        for (int y = startY; y < startY + height; y += 2) {
-            for (int x = startX; x < startX + width; x += 2) {
-                if (x < image.getWidth() && y < image.getHeight()) {
-                    int rgb = image.getRGB(x, y);
-                    colorCount.merge(rgb, 1, Integer::sum);
+    /**
+     * Counts of a region per bucket together with sums of channels, so a bucket is represented by the mean color
+     * of the region's own samples in it, and a flat area keeps its exact color.
+     */
+    private static final class Region {
+
+        private final int[] counts = new int[Histograms.BUCKETS];
+        private final long[] reds = new long[Histograms.BUCKETS];
+        private final long[] greens = new long[Histograms.BUCKETS];
+        private final long[] blues = new long[Histograms.BUCKETS];
+
+        private void add(int bucket, int rgb) {
+            counts[bucket]++;
+            reds[bucket] += (rgb >> 16) & 0xFF;
+            greens[bucket] += (rgb >> 8) & 0xFF;
+            blues[bucket] += rgb & 0xFF;
+        }
+
+        /**
+         * @return mean color of the most frequent bucket, gray for an empty region
+         */
+        private int dominant() {
+            int best = -1;
+            int bestCount = 0;
+            for (int bucket = 0; bucket < Histograms.BUCKETS; bucket++) {
+                if (counts[bucket] > bestCount) {
+                    bestCount = counts[bucket];
+                    best = bucket;
                 }
             }
+            if (best < 0) {
+                return FALLBACK_COLOR;
+            }
+
+            long half = bestCount / 2;
+            return (int) ((reds[best] + half) / bestCount) << 16
+                    | (int) ((greens[best] + half) / bestCount) << 8
+                    | (int) ((blues[best] + half) / bestCount);
         }
-        return colorCount;
+
+        private void clear() {
+            Arrays.fill(counts, 0);
+            Arrays.fill(reds, 0);
+            Arrays.fill(greens, 0);
+            Arrays.fill(blues, 0);
+        }
+
     }
 
     @Data
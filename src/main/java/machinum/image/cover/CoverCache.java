@@ -0,0 +1,100 @@
+package machinum.image.cover;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import machinum.image.ImageStorage;
+import machinum.image.cover.CoverService.CoverInfo;
+import machinum.util.CheckedSupplier;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static machinum.util.Util.sha256;
+
+/**
+ * Rendered book covers, so the same part released to several targets or retried isn't rendered again.
+ * <p>
+ * A cover is stored under {@code covers/<contentHash>/<hash>}, where the content hash is of the origin image,
+ * so covers are removed together with the image, and the hash is made of the origin image content,
+ * the {@link CoverInfo} and {@link CoverService#RENDERER_VERSION}, so covers of an older renderer are just
+ * never read again.
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class CoverCache {
+
+    private final Map<String, Object> locks = new ConcurrentHashMap<>();
+
+    private final ImageStorage storage;
+
+    /**
+     * @return stored cover, or the rendered cover which is stored
+     */
+    public byte[] resolve(byte[] originData, CoverInfo coverInfo, CheckedSupplier<byte[]> renderer) {
+        var key = key(originData, coverInfo);
+        var cached = find(key);
+        if (Objects.nonNull(cached)) {
+            return cached;
+        }
+
+        // Concurrent releases of the same part render the cover only once
+        synchronized (locks.computeIfAbsent(key, k -> new Object())) {
+            try {
+                cached = find(key);
+                if (Objects.nonNull(cached)) {
+                    return cached;
+                }
+
+                var data = renderer.resolve();
+                save(key, data);
+
+                return data;
+            } finally {
+                locks.remove(key);
+            }
+        }
+    }
+
+    /* ============= */
+
+    /**
+     * @param contentHash hash of the origin image content
+     * @return prefix of all covers of the origin image, e.g. to remove them together with the image
+     */
+    public static String prefix(String contentHash) {
+        return "covers/%s/".formatted(contentHash);
+    }
+
+    static String key(byte[] originData, CoverInfo coverInfo) {
+        var contentHash = sha256(originData);
+        return prefix(contentHash) + sha256("%s:%s:%s".formatted(contentHash, coverInfo,
+                CoverService.RENDERER_VERSION));
+    }
+
+    private byte[] find(String key) {
+        try {
+            if (storage.exists(key)) {
+                log.debug("Cover is found in cache: key={}", key);
+                return storage.read(key);
+            }
+        } catch (Exception e) {
+            log.warn("Can't read cover from cache, it's rendered again: key={}", key, e);
+        }
+
+        return null;
+    }
+
+    /**
+     * A failed store doesn't fail the release, the cover is just rendered again next time.
+     */
+    private void save(String key, byte[] data) {
+        try {
+            // Covers are always rendered to png
+            storage.put(key, data, "image/png");
+        } catch (Exception e) {
+            log.warn("Can't store cover in cache: key={}", key, e);
+        }
+    }
+
+}
@@ -11,8 +11,6 @@ import java.awt.font.FontRenderContext;
 import java.awt.font.TextLayout;
 import java.awt.geom.AffineTransform;
 import java.awt.image.BufferedImage;
-import java.awt.image.ConvolveOp;
-import java.awt.image.Kernel;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.util.Arrays;
@@ -75,7 +73,7 @@ public class CoverRenderer {
         if (cover.getBackground().getSourceImage() == null) return;
 
         BufferedImage scaled = scaleImage(cover.getBackground().getSourceImage(), cover.getWidth(), cover.getHeight());
-        BufferedImage blurred = applyGaussianBlur(scaled, cover.getBackground().getBlurRadius());
+        BufferedImage blurred = BlurEngine.gaussian(scaled, cover.getBackground().getBlurRadius());
         g2d.drawImage(blurred, 0, 0, null);
     }
 
@@ -260,32 +258,6 @@ public class CoverRenderer {
         return scaled.getSubimage(Math.max(0, x), Math.max(0, y), targetWidth, targetHeight);
     }
 
-    private BufferedImage applyGaussianBlur(BufferedImage image, int radius) {
-        if (radius <= 0) return image;
-
-        int size = radius * 2 + 1;
-        float[] matrix = new float[size * size];
-        float sigma = radius / 3.0f;
-        float sum = 0;
-
-        for (int i = 0; i < size; i++) {
-            for (int j = 0; j < size; j++) {
-                int x = i - radius;
-                int y = j - radius;
-                matrix[i * size + j] = (float) Math.exp(-(x * x + y * y) / (2 * sigma * sigma));
-                sum += matrix[i * size + j];
-            }
-        }
-
-        for (int i = 0; i < matrix.length; i++) {
-            matrix[i] /= sum;
-        }
-
-        Kernel kernel = new Kernel(size, size, matrix);
-        ConvolveOp op = new ConvolveOp(kernel, ConvolveOp.EDGE_NO_OP, null);
-        return op.filter(image, null);
-    }
-
     /* ============= */
 
     public void renderBrand(Graphics2D g2d) {
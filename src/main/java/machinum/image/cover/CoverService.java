@@ -1,6 +1,8 @@
 package machinum.image.cover;
 
 import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+import lombok.AllArgsConstructor;
+import lombok.NoArgsConstructor;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
 import machinum.image.Image;
@@ -15,6 +17,7 @@ import java.awt.*;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.time.LocalDateTime;
+import java.util.Objects;
 
 import static machinum.image.cover.ColorSampler.calculateTextColor;
 import static machinum.image.cover.ColorSampler.newAlpha;
@@ -22,8 +25,21 @@ import static machinum.image.cover.CoverRenderer.toBytes;
 import static machinum.image.cover.FontSizeCalculator.calculateFont;
 
 @Slf4j
+@NoArgsConstructor
+@AllArgsConstructor
 public class CoverService {
 
+    /**
+     * Version of {@link #generateBookCover}, it must be bumped when the rendering changes, so cached covers
+     * aren't reused.
+     */
+    public static final int RENDERER_VERSION = 1;
+
+    /**
+     * Covers are rendered every time without the cache.
+     */
+    private CoverCache cache;
+
     @SneakyThrows
     public Image generate(Image originImage) {
         Image resizedImage = ImageLoader.upscale(originImage);
@@ -38,8 +54,22 @@ public class CoverService {
                 .build();
     }
 
-    @SneakyThrows
     public Image generateBookCover(Image originImage, CoverInfo coverInfo) {
+        var data = Objects.isNull(cache) ? renderBookCover(originImage, coverInfo)
+                : cache.resolve(originImage.getData(), coverInfo, () -> renderBookCover(originImage, coverInfo));
+
+        return Image.builder()
+                .name(originImage.getName() + "-cover")
+                .contentType(originImage.getContentType())
+                .data(data)
+                .createdAt(LocalDateTime.now())
+                .build();
+    }
+
+    /* ============= */
+
+    @SneakyThrows
+    private byte[] renderBookCover(Image originImage, CoverInfo coverInfo) {
         double targetRatio = 5.0 / 7.0;
         Image resizedImage = ImageLoader.optionalResize(originImage,
                 ResizeStrategy.replicate(15), targetRatio);
@@ -106,12 +136,7 @@ public class CoverService {
                         .build())
                 .build();
 
-        return Image.builder()
-                .name(originImage.getName() + "-cover")
-                .contentType(originImage.getContentType())
-                .data(cover.renderToBytes())
-                .createdAt(LocalDateTime.now())
-                .build();
+        return cover.renderToBytes();
     }
 
     public record CoverInfo(String number, String text, String brandText, String qrContent, String qrTopText,
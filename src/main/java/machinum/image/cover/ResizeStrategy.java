@@ -68,95 +68,6 @@ public interface ResizeStrategy {
 
         private final int blurRadius;
 
-        private static BufferedImage applyGaussianBlur(BufferedImage image, int radius) {
-            if (radius <= 0) {
-                return image;
-            }
-
-            int width = image.getWidth();
-            int height = image.getHeight();
-            BufferedImage blurredImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
-            Graphics2D g = blurredImage.createGraphics();
-            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
-            g.drawImage(image, 0, 0, width, height, null);
-            g.dispose();
-
-            float[] kernel = createGaussianKernel(radius);
-            BufferedImage tempImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
-
-            // Horizontal blur
-            for (int y = 0; y < height; y++) {
-                for (int x = 0; x < width; x++) {
-                    float sumR = 0, sumG = 0, sumB = 0, sumA = 0;
-                    float weightSum = 0;
-                    for (int i = -radius; i <= radius; i++) {
-                        int imageX = Math.min(Math.max(x + i, 0), width - 1);
-                        int kernelIndex = i + radius;
-                        int pixel = image.getRGB(imageX, y);
-                        float weight = kernel[kernelIndex];
-                        sumA += ((pixel >> 24) & 0xFF) * weight;
-                        sumR += ((pixel >> 16) & 0xFF) * weight;
-                        sumG += ((pixel >> 8) & 0xFF) * weight;
-                        sumB += (pixel & 0xFF) * weight;
-                        weightSum += weight;
-                    }
-                    int alpha = Math.round(sumA / weightSum);
-                    int red = Math.round(sumR / weightSum);
-                    int green = Math.round(sumG / weightSum);
-                    int blue = Math.round(sumB / weightSum);
-                    tempImage.setRGB(x, y, (alpha << 24) | (red << 16) | (green << 8) | blue);
-                }
-            }
-
-            // Vertical blur
-            for (int x = 0; x < width; x++) {
-                for (int y = 0; y < height; y++) {
-                    float sumR = 0, sumG = 0, sumB = 0, sumA = 0;
-                    float weightSum = 0;
-                    for (int i = -radius; i <= radius; i++) {
-                        int imageY = Math.min(Math.max(y + i, 0), height - 1);
-                        int kernelIndex = i + radius;
-                        int pixel = tempImage.getRGB(x, imageY);
-                        float weight = kernel[kernelIndex];
-                        sumA += ((pixel >> 24) & 0xFF) * weight;
-                        sumR += ((pixel >> 16) & 0xFF) * weight;
-                        sumG += ((pixel >> 8) & 0xFF) * weight;
-                        sumB += (pixel & 0xFF) * weight;
-                        weightSum += weight;
-                    }
-                    int alpha = Math.round(sumA / weightSum);
-                    int red = Math.round(sumR / weightSum);
-                    int green = Math.round(sumG / weightSum);
-                    int blue = Math.round(sumB / weightSum);
-                    blurredImage.setRGB(x, y, (alpha << 24) | (red << 16) | (green << 8) | blue);
-                }
-            }
-
-            return blurredImage;
-        }
-
-        private static float[] createGaussianKernel(int radius) {
-            int size = 2 * radius + 1;
-            float[] kernel = new float[size];
-            float sigma = radius / 3.0f;
-            float twoSigmaSquare = 2.0f * sigma * sigma;
-            float sigmaRoot = (float) Math.sqrt(twoSigmaSquare * Math.PI);
-            float totalWeight = 0.0f;
-
-            for (int i = -radius; i <= radius; i++) {
-                float distance = i * i;
-                int index = i + radius;
-                kernel[index] = (float) Math.exp(-distance / twoSigmaSquare) / sigmaRoot;
-                totalWeight += kernel[index];
-            }
-
-            for (int i = 0; i < size; i++) {
-                kernel[i] /= totalWeight;
-            }
-
-            return kernel;
-        }
-
         @Override
         public BufferedImage apply(BufferedImage image, double targetRatio) {
             int width = image.getWidth();
@@ -182,7 +93,7 @@ public interface ResizeStrategy {
             Graphics2D g = expanded.createGraphics();
 
             // Fill with blurred edges
-            BufferedImage blurred = applyGaussianBlur(image, blurRadius);
+            BufferedImage blurred = BlurEngine.gaussian(image, blurRadius);
             g.drawImage(blurred, 0, 0, newWidth, newHeight, null);
 
             // Draw original image centered
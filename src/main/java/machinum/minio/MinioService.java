@@ -3,6 +3,9 @@ package machinum.minio;
 import io.jooby.StatusCode;
 import io.minio.*;
 import io.minio.errors.*;
+import io.minio.messages.DeleteError;
+import io.minio.messages.DeleteObject;
+import io.minio.messages.Item;
 import lombok.RequiredArgsConstructor;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
@@ -18,6 +21,7 @@ import java.net.http.HttpResponse;
 import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
 import java.time.ZonedDateTime;
+import java.util.ArrayList;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.TimeUnit;
@@ -190,6 +194,69 @@ public class MinioService {
         }
     }
 
+    /**
+     * Removes a file from MinIO storage, a missing file is ignored.
+     *
+     * @param key the file key/path to remove
+     * @throws AppException if the removal fails
+     */
+    public void removeFile(String key) {
+        try {
+            minioClient.removeObject(
+                    RemoveObjectArgs.builder()
+                            .bucket(bucketName)
+                            .object(key)
+                            .build()
+            );
+            log.debug("Successfully removed file: {}", key);
+        } catch (Exception e) {
+            log.error("Failed to remove file with key: {}", key, e);
+            throw new AppException("Failed to remove file", e);
+        }
+    }
+
+    /**
+     * Removes all files whose keys start with the prefix, e.g. all files of a folder.
+     *
+     * @param prefix the key prefix of files to remove
+     * @return count of removed files
+     * @throws AppException if the removal fails
+     */
+    public int removeFiles(String prefix) {
+        try {
+            var objects = new ArrayList<DeleteObject>();
+            for (Result<Item> result : minioClient.listObjects(
+                    ListObjectsArgs.builder()
+                            .bucket(bucketName)
+                            .prefix(prefix)
+                            .recursive(true)
+                            .build())) {
+                objects.add(new DeleteObject(result.get().objectName()));
+            }
+            if (objects.isEmpty()) {
+                return 0;
+            }
+
+            // Objects are removed lazily, while results are iterated
+            var failed = 0;
+            for (Result<DeleteError> result : minioClient.removeObjects(
+                    RemoveObjectsArgs.builder()
+                            .bucket(bucketName)
+                            .objects(objects)
+                            .build())) {
+                var error = result.get();
+                log.warn("Failed to remove file: key={}, message={}", error.objectName(), error.message());
+                failed++;
+            }
+            log.debug("Successfully removed files: prefix={}, count={}", prefix, objects.size() - failed);
+
+            return objects.size() - failed;
+        } catch (Exception e) {
+            log.error("Failed to remove files with prefix: {}", prefix, e);
+            throw new AppException("Failed to remove files", e);
+        }
+    }
+
     /**
      * Creates/uploads an MP3 file to MinIO storage.
      *
@@ -201,6 +268,42 @@ public class MinioService {
         createFile(key, data, "audio/mpeg", metadata);
     }
 
+    /**
+     * Gets metadata of a file without downloading its content.
+     *
+     * @param objectKey the file key/path to check
+     * @return FileInfo record, or empty if the file doesn't exist
+     * @throws AppException if the retrieval fails
+     */
+    public Optional<FileInfo> stat(String objectKey) {
+        try {
+            StatObjectResponse stat = minioClient.statObject(
+                    StatObjectArgs.builder()
+                            .bucket(bucketName)
+                            .object(objectKey)
+                            .build()
+            );
+
+            return Optional.of(new FileInfo(
+                    stat.contentType(),
+                    stat.size(),
+                    stat.lastModified(),
+                    stat.etag(),
+                    stat.userMetadata()
+            ));
+        } catch (ErrorResponseException e) {
+            if (NO_SUCH_KEY.equals(e.errorResponse().code())) {
+                log.warn("Attempted to stat non-existent file: {}", objectKey);
+                return Optional.empty();
+            }
+            log.error("Error getting stat of file with key: {}", objectKey, e);
+            throw new AppException("Failed to get file stat", e);
+        } catch (Exception e) {
+            log.error("Unexpected error getting stat of file with key: {}", objectKey, e);
+            throw new AppException("Failed to get file stat", e);
+        }
+    }
+
     /**
      * Record containing file data and metadata from MinIO.
      *
@@ -219,6 +322,16 @@ public class MinioService {
             String etag,
             Map<String, String> metadata) {}
 
+    /**
+     * Record containing metadata of a file from MinIO, same as {@link FileData} but without content.
+     */
+    public record FileInfo(
+            String contentType,
+            long contentLength,
+            ZonedDateTime lastModified,
+            String etag,
+            Map<String, String> metadata) {}
+
     /**
      * Creates a bucket if it does not already exist.
      *
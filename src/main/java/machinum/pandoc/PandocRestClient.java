@@ -3,6 +3,7 @@ package machinum.pandoc;
 import lombok.*;
 import lombok.extern.slf4j.Slf4j;
 import machinum.cache.CacheService;
+import machinum.util.MultipartBodyPublisher;
 
 import java.io.IOException;
 import java.net.ConnectException;
@@ -10,12 +11,17 @@ import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HexFormat;
 import java.util.List;
 import java.util.Objects;
-import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 
 import static machinum.util.Util.isNonEmpty;
@@ -33,11 +39,15 @@ public class PandocRestClient {
     private final String baseUrl;
 
 
-    @SneakyThrows
-    @Synchronized
+    /**
+     * Converted epubs are kept on disk for a long time, the key is the hash of the whole request,
+     * so a changed chapter or cover never gets a stale epub, and the same content under another name is reused.
+     */
+    private static final Duration EPUB_CACHE_TTL = Duration.ofDays(30);
+
     public byte[] convertToEpubCached(PandocRequest pandocRequest) {
-        return cache.get("epub-" + pandocRequest.getOutputFilename(), () ->
-                convertToEpub(pandocRequest));
+        return cache.getPersistent("epub-" + pandocRequest.contentHash(), () -> convertToEpub(pandocRequest),
+                EPUB_CACHE_TTL.toMillis(), TimeUnit.MILLISECONDS);
     }
 
     /**
@@ -60,13 +70,8 @@ public class PandocRestClient {
             throw new IllegalArgumentException("Cover image does not exist");
         }
 
-        // Create a unique boundary for multipart form data
-        String boundary = UUID.randomUUID().toString();
-
-        // Build the multipart request body
-        byte[] requestBody = buildMultipartBody(
-                boundary,
-                pandocRequest);
+        // Build the multipart request body, parts are streamed without a combined buffer
+        var requestBody = buildMultipartBody(pandocRequest);
 
         // Create the HTTP request
         var targetUrl = URI.create(baseUrl + "/api/transform");
@@ -75,8 +80,8 @@ public class PandocRestClient {
 
         HttpRequest request = HttpRequest.newBuilder()
                 .uri(targetUrl)
-                .header("Content-Type", "multipart/form-data; boundary=" + boundary)
-                .POST(HttpRequest.BodyPublishers.ofByteArray(requestBody))
+                .header("Content-Type", requestBody.contentType())
+                .POST(requestBody.build())
                 .build();
 
         try {
@@ -109,127 +114,96 @@ public class PandocRestClient {
     /**
      * Build the multipart/form-data request body
      */
-    private byte[] buildMultipartBody(String boundary, PandocRequest pandocRequest) throws IOException {
-        List<byte[]> dataParts = new ArrayList<>();
+    private MultipartBodyPublisher buildMultipartBody(PandocRequest pandocRequest) {
+        var body = new MultipartBodyPublisher();
 
         // Add markdown files
         for (int i = 0; i < pandocRequest.getMarkdownFiles().size(); i++) {
             var markdownBytes = pandocRequest.getMarkdownFiles().get(i);
             var filename = String.format("chapter_%03d.md", i + 1);
-            addFilePart(boundary, "markdown_files", filename, "text/markdown", markdownBytes, dataParts);
+            body.filePart("markdown_files", filename, "text/markdown", markdownBytes);
         }
 
         // Add cover image if provided
         if (pandocRequest.getCoverImage() != null) {
             var coverFilename = getCoverImageFilename(pandocRequest.getCoverContentType());
-            addFilePart(boundary, "cover_image", coverFilename, pandocRequest.getCoverContentType(), pandocRequest.getCoverImage(), dataParts);
+            body.filePart("cover_image", coverFilename, pandocRequest.getCoverContentType(), pandocRequest.getCoverImage());
         }
 
         // Add title if provided
         if (isNonEmpty(pandocRequest.getTitle())) {
-            addTextPart(boundary, "title", pandocRequest.getTitle(), dataParts);
+            body.textPart("title", pandocRequest.getTitle());
         }
         // Add title if provided
         if (isNonEmpty(pandocRequest.getSubtitle())) {
-            addTextPart(boundary, "subtitle", pandocRequest.getSubtitle(), dataParts);
+            body.textPart("subtitle", pandocRequest.getSubtitle());
         }
 
         // Add author if provided
         if (isNonEmpty(pandocRequest.getAuthor())) {
-            addTextPart(boundary, "author", pandocRequest.getAuthor(), dataParts);
+            body.textPart("author", pandocRequest.getAuthor());
         }
 
         if (isNonEmpty(pandocRequest.getPublisher())) {
-            addTextPart(boundary, "publisher", pandocRequest.getPublisher(), dataParts);
+            body.textPart("publisher", pandocRequest.getPublisher());
         }
 
         if (isNonEmpty(pandocRequest.getPublisherInfo())) {
-            addTextPart(boundary, "publisher_info", pandocRequest.getPublisherInfo(), dataParts);
+            body.textPart("publisher_info", pandocRequest.getPublisherInfo());
         }
 
         if (isNonEmpty(pandocRequest.getEdition())) {
-            addTextPart(boundary, "edition", pandocRequest.getEdition(), dataParts);
+            body.textPart("edition", pandocRequest.getEdition());
         }
 
         if (isNonEmpty(pandocRequest.getRights())) {
-            addTextPart(boundary, "rights", pandocRequest.getRights(), dataParts);
+            body.textPart("rights", pandocRequest.getRights());
         }
 
         if (isNonEmpty(pandocRequest.getLegalRights())) {
-            addTextPart(boundary, "legal_rights", pandocRequest.getLegalRights(), dataParts);
+            body.textPart("legal_rights", pandocRequest.getLegalRights());
         }
 
         if (isNonEmpty(pandocRequest.getDisclaimer())) {
-            addTextPart(boundary, "disclaimer", pandocRequest.getDisclaimer(), dataParts);
+            body.textPart("disclaimer", pandocRequest.getDisclaimer());
         }
 
         if (isNonEmpty(pandocRequest.getDescription())) {
-            addTextPart(boundary, "description", pandocRequest.getDescription(), dataParts);
+            body.textPart("description", pandocRequest.getDescription());
         }
 
         if (isNonEmpty(pandocRequest.getKeywords())) {
-            addTextPart(boundary, "keywords", pandocRequest.getKeywords(), dataParts);
+            body.textPart("keywords", pandocRequest.getKeywords());
         }
 
         if (isNonEmpty(pandocRequest.getDate())) {
-            addTextPart(boundary, "date", pandocRequest.getDate(), dataParts);
+            body.textPart("date", pandocRequest.getDate());
         }
 
         if (isNonEmpty(pandocRequest.getPubdate())) {
-            addTextPart(boundary, "pubdate", pandocRequest.getPubdate(), dataParts);
+            body.textPart("pubdate", pandocRequest.getPubdate());
         }
 
         if (isNonEmpty(pandocRequest.getWebsite())) {
-            addTextPart(boundary, "website", pandocRequest.getWebsite(), dataParts);
+            body.textPart("website", pandocRequest.getWebsite());
         }
 
         if (Objects.nonNull(pandocRequest.getSocialLinks())) {
             for (String socialLink : pandocRequest.getSocialLinks()) {
-                addTextPart(boundary, "social_links", socialLink, dataParts);
+                body.textPart("social_links", socialLink);
             }
         }
 
         // Add language
-        addTextPart(boundary, "language", pandocRequest.getLanguage(), dataParts);
+        body.textPart("language", pandocRequest.getLanguage());
 
         // Add output filename
-        addTextPart(boundary, "output_filename", pandocRequest.getOutputFilename(), dataParts);
+        body.textPart("output_filename", pandocRequest.getOutputFilename());
 
         // Add toc depth
-        addTextPart(boundary, "toc_depth", String.valueOf(pandocRequest.getTocDepth()), dataParts);
-
-        // Add closing boundary
-        dataParts.add(("--" + boundary + "--\r\n").getBytes(StandardCharsets.UTF_8));
+        body.textPart("toc_depth", String.valueOf(pandocRequest.getTocDepth()));
 
-        // Combine all parts into a single byte array
-        return combineParts(dataParts);
-    }
-
-    // Helper method to add a file part
-    private void addFilePart(String boundary, String name, String filename, String contentType, byte[] content, List<byte[]> dataParts) {
-        String header = String.format("--%s\r\nContent-Disposition: form-data; name=\"%s\"; filename=\"%s\"\r\nContent-Type: %s\r\n\r\n",
-                boundary, name, filename, contentType);
-        dataParts.add(header.getBytes(StandardCharsets.UTF_8));
-        dataParts.add(content);
-        dataParts.add("\r\n".getBytes(StandardCharsets.UTF_8));
-    }
-
-    // Helper method to add a text part
-    private void addTextPart(String boundary, String name, String value, List<byte[]> dataParts) {
-        String part = String.format("--%s\r\nContent-Disposition: form-data; name=\"%s\"\r\n\r\n%s\r\n", boundary, name, value);
-        dataParts.add(part.getBytes(StandardCharsets.UTF_8));
-    }
-
-    // Helper method to combine all parts into a single byte array
-    private byte[] combineParts(List<byte[]> dataParts) {
-        int totalSize = dataParts.stream().mapToInt(part -> part.length).sum();
-        byte[] result = new byte[totalSize];
-        int currentPosition = 0;
-        for (byte[] part : dataParts) {
-            System.arraycopy(part, 0, result, currentPosition, part.length);
-            currentPosition += part.length;
-        }
-        return result;
+        return body;
     }
 
     @Deprecated
@@ -295,6 +269,42 @@ public class PandocRestClient {
         private int tocDepth = 2;
 
 
+        /**
+         * @return sha256 of everything which affects the resulting epub, except the output filename
+         */
+        @SneakyThrows
+        public String contentHash() {
+            var digest = MessageDigest.getInstance("SHA-256");
+            var markdowns = Objects.requireNonNullElse(markdownFiles, List.<byte[]>of());
+            update(digest, String.valueOf(markdowns.size()));
+            for (byte[] markdown : markdowns) {
+                update(digest, markdown);
+            }
+            update(digest, coverImage);
+            for (Object value : Arrays.asList(startIndex, coverContentType, title, subtitle, author, publisher,
+                    publisherInfo, edition, rights, legalRights, disclaimer, description, keywords, date, pubdate,
+                    website, socialLinks, language, tocDepth)) {
+                update(digest, Objects.toString(value));
+            }
+
+            return HexFormat.of().formatHex(digest.digest());
+        }
+
+        private static void update(MessageDigest digest, String value) {
+            update(digest, value.getBytes(StandardCharsets.UTF_8));
+        }
+
+        /**
+         * Every value is prefixed with its length, so values can't be shifted between fields.
+         */
+        private static void update(MessageDigest digest, byte[] value) {
+            var length = Objects.isNull(value) ? -1 : value.length;
+            digest.update(ByteBuffer.allocate(Integer.BYTES).putInt(length).array());
+            if (Objects.nonNull(value)) {
+                digest.update(value);
+            }
+        }
+
         public static PandocRequest createNew(Function<PandocRequest.PandocRequestBuilder, PandocRequest.PandocRequestBuilder> creator) {
             PandocRequest request = creator.apply(PandocRequest.builder())
                     .build();
@@ -9,10 +9,14 @@ import machinum.util.Pair;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.LocalTime;
 import java.util.*;
 import java.util.function.Function;
 
 import static machinum.release.Release.ReleaseConstants.PAGES_PARAM;
+import static machinum.release.Release.ReleaseConstants.PUBLISHED_MESSAGE_KEYS;
+import static machinum.telegram.TelegramHandler.TelegramConstants.TELEGRAM_BOOK_ID;
+import static machinum.telegram.TelegramHandler.TelegramConstants.TELEGRAM_CHAPTER_ID;
 import static machinum.util.Util.toPair;
 
 @Valid
@@ -27,6 +31,10 @@ public class Release implements MetadataSupport<Release> {
     private String releaseTargetId;
     @Builder.Default
     private LocalDate date = LocalDate.now();
+    /**
+     * Exact moment of the release, when it's empty the release happens on {@link #date} at the default time.
+     */
+    private LocalDateTime releaseAt;
     @Builder.Default
     private int chapters = 0;
     @Builder.Default
@@ -48,6 +56,10 @@ public class Release implements MetadataSupport<Release> {
         return ReleaseStatus.EXECUTED.name().equals(status);
     }
 
+    public LocalDateTime releaseAt(LocalTime defaultTime) {
+        return Objects.nonNull(releaseAt) ? releaseAt : date.atTime(defaultTime);
+    }
+
     public Pair<Integer, Integer> toPageRequest() {
         String pages = metadata(PAGES_PARAM);
 
@@ -61,7 +73,14 @@ public class Release implements MetadataSupport<Release> {
         return ReleaseStatus.valueOf(getStatus());
     }
 
+    /**
+     * A reset of an executed release drops ids of its published messages, so the release is published again
+     * instead of being skipped as already published.
+     */
     public void status(ReleaseStatus status) {
+        if (isExecuted() && status != ReleaseStatus.EXECUTED) {
+            PUBLISHED_MESSAGE_KEYS.forEach(metadata::remove);
+        }
         setStatus(status.name());
     }
 
@@ -119,6 +138,29 @@ public class Release implements MetadataSupport<Release> {
 
     }
 
+    /**
+     * Columns of a release which are shown in the schedule, without metadata.
+     */
+    @Data
+    @AllArgsConstructor
+    @Builder(toBuilder = true)
+    @NoArgsConstructor(access = AccessLevel.PUBLIC)
+    public static class ReleaseSummary {
+
+        private String id;
+        private String releaseActionType;
+        private String releaseTargetId;
+        private LocalDate date;
+        private LocalDateTime releaseAt;
+        private int chapters;
+        private String status;
+
+        public boolean isExecuted() {
+            return ReleaseStatus.EXECUTED.name().equals(status);
+        }
+
+    }
+
     @NoArgsConstructor(access = AccessLevel.PRIVATE)
     public static class ReleaseConstants {
 
@@ -126,6 +168,11 @@ public class Release implements MetadataSupport<Release> {
         public static final String SITE_URL_PARAM = "siteUrl";
         public static final String SITE_PORT_PARAM = "sitePort";
 
+        /**
+         * Ids of messages published by the release, a retry of a failed release doesn't publish them again.
+         */
+        public static final Set<String> PUBLISHED_MESSAGE_KEYS = Set.of(TELEGRAM_BOOK_ID, TELEGRAM_CHAPTER_ID);
+
     }
 
 }
@@ -0,0 +1,169 @@
+package machinum.release;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import machinum.minio.MinioService;
+import machinum.util.CheckedSupplier;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+
+import static machinum.util.Util.sha256;
+
+/**
+ * Checkpoints of release stages, so a retried release resumes at the failed stage instead of building
+ * everything again.
+ * <p>
+ * The output of a stage is stored in MinIO under a key made of the release id, the stage and the hash
+ * of the stage input, the release metadata keeps {@code checkpoints -> stage -> {hash, key, contentHash}}
+ * and only that entry is saved right after the stage. A checkpoint is used only for the same input and only when its content
+ * hash matches, so a changed input (e.g. edited chapters) is always built again. All checkpoints of the release
+ * are removed once it's executed.
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class ReleaseCheckpoints {
+
+    public static final String CHECKPOINTS = "checkpoints";
+
+    private static final String CONTENT_HASH = "content-hash";
+
+    private final MinioService minioService;
+    private final ReleaseRepository repository;
+
+    /**
+     * @param inputHash hash of everything the output depends on
+     * @return output from the checkpoint, or the built output which is checkpointed
+     */
+    public byte[] resolve(Release release, String stage, String inputHash, String contentType,
+                          CheckedSupplier<byte[]> producer) {
+        return resolveArtifact(release, stage, inputHash, contentType, () -> new Artifact(producer.get(), Map.of()))
+                .data();
+    }
+
+    public Artifact resolveArtifact(Release release, String stage, String inputHash, String contentType,
+                                    CheckedSupplier<Artifact> producer) {
+        var checkpoint = find(release, stage, inputHash);
+        if (checkpoint.isPresent()) {
+            return checkpoint.get();
+        }
+
+        Artifact artifact;
+        try {
+            artifact = producer.get();
+        } catch (Exception e) {
+            return ExceptionUtils.rethrow(e);
+        }
+        save(release, stage, inputHash, contentType, artifact);
+
+        return artifact;
+    }
+
+    public Optional<Artifact> find(Release release, String stage, String inputHash) {
+        if (Objects.isNull(release.getId())) {
+            return Optional.empty();
+        }
+
+        var key = key(release, stage, inputHash);
+        try {
+            return minioService.findByKey(key)
+                    .filter(file -> sha256(file.data()).equals(file.metadata().get(CONTENT_HASH)))
+                    .map(file -> {
+                        log.info("Resume release from checkpoint: id={}, stage={}", release.getId(), stage);
+                        var attributes = new HashMap<>(file.metadata());
+                        attributes.remove(CONTENT_HASH);
+                        return new Artifact(file.data(), attributes);
+                    });
+        } catch (Exception e) {
+            log.warn("Can't read checkpoint, stage is built again: key={}", key, e);
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Stores the output of the stage, a failed store doesn't fail the release, the stage is just built again
+     * on retry.
+     */
+    public void save(Release release, String stage, String inputHash, String contentType, Artifact artifact) {
+        if (Objects.isNull(release.getId()) || Objects.isNull(artifact.data()) || artifact.data().length == 0) {
+            return;
+        }
+
+        var key = key(release, stage, inputHash);
+        try {
+            var contentHash = sha256(artifact.data());
+            var metadata = new HashMap<>(artifact.attributes());
+            metadata.put(CONTENT_HASH, contentHash);
+            minioService.createFile(key, artifact.data(), contentType, metadata);
+
+            var checkpoint = Map.<String, Object>of("hash", inputHash, "key", key, "contentHash", contentHash);
+            synchronized (release) {
+                Map<String, Object> checkpoints = new HashMap<>(release.metadata(CHECKPOINTS, Map.of()));
+                checkpoints.put(stage, checkpoint);
+                release.addMetadata(CHECKPOINTS, checkpoints);
+            }
+            // Only the checkpoint is written, the release can be executed by another node meanwhile
+            repository.patchMetadataEntry(release.getId(), CHECKPOINTS, Map.of(stage, checkpoint));
+            log.debug("Saved checkpoint: id={}, stage={}, key={}", release.getId(), stage, key);
+        } catch (Exception e) {
+            log.warn("Can't save checkpoint: key={}", key, e);
+        }
+    }
+
+    /**
+     * Saves the value of the key from metadata of the release, e.g. id of a published message, so it survives
+     * a failure of later stages.
+     */
+    public void saveProgress(Release release, String key) {
+        if (Objects.isNull(release.getId())) {
+            return;
+        }
+
+        Map<String, Object> patch = new HashMap<>();
+        synchronized (release) {
+            patch.put(key, release.metadata(key));
+        }
+        repository.patchMetadata(release.getId(), patch);
+    }
+
+    /**
+     * Removes checkpoints of an executed release, they aren't needed anymore and audio checkpoints alone take
+     * hundreds of MB per release. A failed removal doesn't fail the release.
+     */
+    public void clear(Release release) {
+        if (Objects.isNull(release.getId())) {
+            return;
+        }
+
+        var prefix = prefix(release);
+        try {
+            var removed = minioService.removeFiles(prefix);
+            synchronized (release) {
+                release.getMetadata().remove(CHECKPOINTS);
+            }
+            repository.removeMetadata(release.getId(), CHECKPOINTS);
+            log.debug("Removed checkpoints of release: id={}, count={}", release.getId(), removed);
+        } catch (Exception e) {
+            log.warn("Can't remove checkpoints of release: prefix={}", prefix, e);
+        }
+    }
+
+    /* ============= */
+
+    private String key(Release release, String stage, String inputHash) {
+        return prefix(release) + "%s-%s".formatted(stage, inputHash);
+    }
+
+    private String prefix(Release release) {
+        return "releases/%s/".formatted(release.getId());
+    }
+
+    /**
+     * @param attributes small values which are stored together with the data, e.g. a file name
+     */
+    public record Artifact(byte[] data, Map<String, String> attributes) {}
+
+}
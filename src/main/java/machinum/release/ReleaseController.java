@@ -24,11 +24,13 @@ import java.util.Optional;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import machinum.exception.AppException;
+import machinum.release.Release.ReleaseSummary;
 import machinum.release.Release.ReleaseTarget;
 import machinum.release.Release.ReleaseView;
 import machinum.release.ReleaseRepository.ReleaseTargetRepository;
 import machinum.scheduler.ActionHandler.ActionType;
 import machinum.scheduler.Scheduler;
+import machinum.scheduler.Scheduler.SchedulerStats;
 
 @Slf4j
 @Path("/api")
@@ -60,6 +62,7 @@ public class ReleaseController {
             try {
                 scheduleRequest.releases().forEach(r -> r.setReleaseTargetId(targetId));
                 repository.create(scheduleRequest.releases());
+                scheduler.executeTargetAsync(targetId);
 
                 ctx.setResponseCode(StatusCode.OK);
             } catch (Exception e) {
@@ -72,6 +75,7 @@ public class ReleaseController {
             try {
                 var schedule = generator.generate(targetId, settings);
                 repository.create(schedule);
+                scheduler.executeTargetAsync(targetId);
 
                 ctx.setResponseCode(StatusCode.OK);
             } catch (Exception e) {
@@ -87,7 +91,7 @@ public class ReleaseController {
     }
 
     @GET("/books/{bookId}/schedule")
-    public List<Release> getReleaseSchedule(@PathParam("bookId") String bookId, Context ctx) {
+    public List<ReleaseSummary> getReleaseSchedule(@PathParam("bookId") String bookId, Context ctx) {
         return repository.findByBookId(bookId);
     }
 
@@ -96,6 +100,11 @@ public class ReleaseController {
         return repository.findByTargetId(releaseTargetId);
     }
 
+    @GET("/scheduler/stats")
+    public SchedulerStats getSchedulerStats(Context ctx) {
+        return scheduler.stats();
+    }
+
     @GET("/release-targets/{releaseTargetId}")
     public ReleaseTarget getReleaseTarget(@PathParam("releaseTargetId") String releaseTargetId, Context ctx) {
         Optional<ReleaseTarget> result = targetRepository.findById(releaseTargetId);
@@ -119,7 +128,7 @@ public class ReleaseController {
     public void createRelease(@PathParam("id") String id, Context ctx) {
         var value = repository.findById(id);
         value.ifPresent(release ->
-                scheduler.executeAsync(release.copy(b -> b.date(LocalDate.now()))));
+                scheduler.executeAsync(release.copy(b -> b.date(LocalDate.now()).releaseAt(LocalDateTime.now()))));
 
         ctx.setResponseCode(value.isEmpty() ? StatusCode.NOT_FOUND : StatusCode.OK);
     }
@@ -144,11 +153,17 @@ public class ReleaseController {
         validator.validate(release);
         var result = repository.findById(id).map(releaseFromDb -> {
             releaseFromDb.setDate(release.getDate());
+            releaseFromDb.setReleaseAt(release.getReleaseAt());
             releaseFromDb.setChapters(release.getChapters());
-            releaseFromDb.status(release.status());
+            // Metadata goes first, so a reset of the status drops published message ids from it
             releaseFromDb.setMetadata(release.getMetadata());
+            releaseFromDb.status(release.status());
             releaseFromDb.setUpdatedAt(LocalDateTime.now());
-            return repository.update(releaseFromDb);
+            var updated = repository.update(releaseFromDb);
+            // The release is scheduled again by its new time
+            scheduler.executeAsync(releaseFromDb);
+
+            return updated;
         }).orElse(Boolean.FALSE);
 
         ctx.setResponseCode(result ? StatusCode.NO_CONTENT : StatusCode.NOT_FOUND);
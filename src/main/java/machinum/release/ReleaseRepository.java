@@ -4,13 +4,17 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.*;
 import lombok.extern.slf4j.Slf4j;
 import machinum.exception.AppException;
+import machinum.release.Release.ReleaseSummary;
 import machinum.release.Release.ReleaseTarget;
 import machinum.release.Release.ReleaseView;
+import org.jdbi.v3.core.Handle;
 import org.jdbi.v3.core.Jdbi;
 import org.jdbi.v3.core.mapper.reflect.BeanMapper;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 
@@ -49,78 +53,170 @@ public class ReleaseRepository {
                 LEFT JOIN release_targets rt0 ON rt0.id = r0.release_target_id 
                 WHERE r0.status IN ('DRAFT', 'MANUAL_ACTION_REQUIRED') 
                 AND rt0.enabled IS TRUE
-                ORDER BY r0.date, rt0.action_type""")
+                ORDER BY r0.date, r0.release_at NULLS FIRST, rt0.action_type""")
                 .mapToBean(Release.class)
                 .list());
     }
 
+    /**
+     * Inserts all releases in one batch, the driver rewrites it into multi-row inserts
+     * ({@code reWriteBatchedInserts=true}), so a whole schedule is a single round trip.
+     */
     @SneakyThrows
     public void create(List<Release> releases) {
-        jdbi.withHandle(handle -> {
+        if (releases.isEmpty()) {
+            return;
+        }
+
+        jdbi.useTransaction(handle -> {
+            var batch = handle.prepareBatch("""
+                    INSERT INTO releases (date, release_at, release_target_id, chapters, status, metadata, created_at, updated_at) 
+                    VALUES (:date, :releaseAt, :releaseTargetId, :chapters, :status, CAST(:metadataString AS JSONB), :createdAt, :updatedAt)
+                    """);
             for (Release release : releases) {
-                handle.createUpdate("""
-                                    INSERT INTO releases (date, release_target_id, chapters, status, metadata, created_at, updated_at) 
-                                    VALUES (:date, :releaseTargetId, :chapters, :status, CAST(:metadataString AS JSON), :createdAt, :updatedAt) 
-                                    RETURNING id
-                                """)
-                        .bindBean(release)
+                batch.bindBean(release)
                         .bind("metadataString", mapper.writeValueAsString(release.getMetadata()))
-                        .executeAndReturnGeneratedKeys("id")
-                        .mapTo(String.class)
-                        .one();
+                        .add();
             }
 
-            return null;
+            var counts = batch.execute();
+            log.debug("Created releases in batch: size={}, statements={}", releases.size(), counts.length);
+
+            releases.stream()
+                    .map(Release::getReleaseTargetId)
+                    .distinct()
+                    .forEach(releaseTargetId -> updatePositions(handle, releaseTargetId));
         });
     }
 
     @SneakyThrows
     public String create(Release release) {
+        return jdbi.inTransaction(handle -> {
+            var id = handle.createUpdate("""
+                                INSERT INTO releases (date, release_at, release_target_id, chapters, status, metadata, created_at, updated_at) 
+                                VALUES (:date, :releaseAt, :releaseTargetId, :chapters, :status, CAST(:metadataString AS JSONB), :createdAt, :updatedAt) 
+                                RETURNING id
+                            """)
+                    .bindBean(release)
+                    .bind("metadataString", mapper.writeValueAsString(release.getMetadata()))
+                    .executeAndReturnGeneratedKeys("id")
+                    .mapTo(String.class)
+                    .one();
+            updatePositions(handle, release.getReleaseTargetId());
+
+            return id;
+        });
+    }
+
+    /**
+     * Positions of releases of the target are updated only when the date of the release is changed.
+     */
+    @SneakyThrows
+    public boolean update(Release release) {
+        return jdbi.inTransaction(handle -> {
+            var rows = handle.createQuery("""
+                                UPDATE releases r0 SET 
+                                    date = :date, 
+                                    release_at = :releaseAt, 
+                                    chapters = :chapters, 
+                                    status = :status,
+                                    metadata = CAST(:metadataString AS JSONB), 
+                                    updated_at = :updatedAtTime 
+                                FROM releases old 
+                                WHERE r0.id = :id 
+                                AND old.id = r0.id 
+                                RETURNING r0.release_target_id, (old.date <> r0.date) AS date_changed
+                            """)
+                    .bind("id", release.getId())
+                    .bind("metadataString", mapper.writeValueAsString(release.getMetadata()))
+                    .bind("updatedAtTime", LocalDateTime.now())
+                    .bindBean(release)
+                    .mapToMap()
+                    .list();
+            rows.stream()
+                    .filter(row -> Boolean.TRUE.equals(row.get("date_changed")))
+                    .forEach(row -> updatePositions(handle, (String) row.get("release_target_id")));
+
+            return !rows.isEmpty();
+        });
+    }
+
+    /**
+     * Merges only the given keys into metadata of the release, so keys written meanwhile by another node,
+     * e.g. ids of published messages, aren't overwritten by a stale copy of the release.
+     */
+    @SneakyThrows
+    public boolean patchMetadata(String releaseId, Map<String, Object> patch) {
         return jdbi.withHandle(handle -> handle.createUpdate("""
-                            INSERT INTO releases (date, release_target_id, chapters, status, metadata, created_at, updated_at) 
-                            VALUES (:date, :releaseTargetId, :chapters, :status, CAST(:metadataString AS JSON), :createdAt, :updatedAt) 
-                            RETURNING id
+                            UPDATE releases SET 
+                                metadata = COALESCE(metadata, '{}') || CAST(:patch AS JSONB), 
+                                updated_at = :updatedAtTime 
+                            WHERE id = :id
                         """)
-                .bindBean(release)
-                .bind("metadataString", mapper.writeValueAsString(release.getMetadata()))
-                .executeAndReturnGeneratedKeys("id")
-                .mapTo(String.class)
-                .one());
+                .bind("id", releaseId)
+                .bind("patch", mapper.writeValueAsString(patch))
+                .bind("updatedAtTime", LocalDateTime.now())
+                .execute() > 0);
     }
 
+    /**
+     * Merges the given entries into the object which is stored under the key of the metadata, other entries
+     * of the object are kept.
+     */
     @SneakyThrows
-    public boolean update(Release release) {
+    public boolean patchMetadataEntry(String releaseId, String key, Map<String, Object> patch) {
         return jdbi.withHandle(handle -> handle.createUpdate("""
                             UPDATE releases SET 
-                                date = :date, 
-                                chapters = :chapters, 
-                                status = :status,
-                                metadata = CAST(:metadataString AS JSON), 
+                                metadata = jsonb_set(COALESCE(metadata, '{}'), ARRAY[CAST(:key AS TEXT)], 
+                                    COALESCE(metadata -> CAST(:key AS TEXT), '{}') || CAST(:patch AS JSONB)), 
                                 updated_at = :updatedAtTime 
                             WHERE id = :id
                         """)
-                .bind("id", release.getId())
-                .bind("metadataString", mapper.writeValueAsString(release.getMetadata()))
+                .bind("id", releaseId)
+                .bind("key", key)
+                .bind("patch", mapper.writeValueAsString(patch))
                 .bind("updatedAtTime", LocalDateTime.now())
-                .bindBean(release)
                 .execute() > 0);
     }
 
-    public boolean delete(String id) {
-        return jdbi.withHandle(handle -> handle.createUpdate("DELETE FROM releases WHERE id = :id")
-                .bind("id", id)
+    /**
+     * Removes the keys from metadata of the release, other keys are kept.
+     */
+    public boolean removeMetadata(String releaseId, String... keys) {
+        return jdbi.withHandle(handle -> handle.createUpdate("""
+                            UPDATE releases SET 
+                                metadata = metadata - CAST(:keys AS TEXT[]), 
+                                updated_at = :updatedAtTime 
+                            WHERE id = :id
+                        """)
+                .bind("id", releaseId)
+                .bind("keys", keys)
+                .bind("updatedAtTime", LocalDateTime.now())
                 .execute() > 0);
     }
 
-    public List<Release> findByBookId(String bookId) {
+    public boolean delete(String id) {
+        return jdbi.inTransaction(handle -> {
+            var releaseTargetId = handle.createQuery("DELETE FROM releases WHERE id = :id RETURNING release_target_id")
+                    .bind("id", id)
+                    .mapTo(String.class)
+                    .findOne();
+            releaseTargetId.ifPresent(targetId -> updatePositions(handle, targetId));
+
+            return releaseTargetId.isPresent();
+        });
+    }
+
+    public List<ReleaseSummary> findByBookId(String bookId) {
         return jdbi.withHandle(handle -> handle.createQuery("""
-                        SELECT rt0.action_type as release_action_type, r0.* 
+                        SELECT rt0.action_type as release_action_type, r0.id, r0.release_target_id, r0.date, 
+                            r0.release_at, r0.chapters, r0.status 
                         FROM release_targets rt0 
                         LEFT JOIN releases r0 ON r0.release_target_id = rt0.id 
                         WHERE rt0.book_id = :bookId
                         """)
                 .bind("bookId", bookId)
-                .mapToBean(Release.class)
+                .mapToBean(ReleaseSummary.class)
                 .list());
     }
 
@@ -137,7 +233,110 @@ public class ReleaseRepository {
                 .execute() > 0);
     }
 
+    /**
+     * Takes the lease of a release for the node, a release leased by another node is skipped without waiting.
+     * Expiry is counted by the database clock, so clocks of nodes don't have to be in sync.
+     *
+     * @return whether the lease is taken, {@code false} if the release is leased by another node or executed
+     */
+    public boolean claim(String releaseId, String owner, Duration lease) {
+        return jdbi.withHandle(handle -> handle.createUpdate("""
+                            UPDATE releases SET 
+                                lease_owner = :owner, 
+                                lease_expires_at = LOCALTIMESTAMP + make_interval(secs => :leaseSeconds) 
+                            WHERE id = (
+                                SELECT id 
+                                FROM releases 
+                                WHERE id = :id 
+                                AND status IN ('DRAFT', 'MANUAL_ACTION_REQUIRED') 
+                                AND (lease_expires_at IS NULL OR lease_expires_at < LOCALTIMESTAMP OR lease_owner = :owner) 
+                                FOR UPDATE SKIP LOCKED
+                            )
+                        """)
+                .bind("id", releaseId)
+                .bind("owner", owner)
+                .bind("leaseSeconds", lease.toSeconds())
+                .execute() > 0);
+    }
+
+    /**
+     * Takes over releases whose leases are expired, e.g. the owner node has died during execution.
+     *
+     * @return claimed releases, at most {@code limit}
+     */
+    public List<Release> claimExpired(String owner, Duration lease, int limit) {
+        return jdbi.withHandle(handle -> handle.createQuery("""
+                        WITH expired AS (
+                            SELECT id 
+                            FROM releases 
+                            WHERE status IN ('DRAFT', 'MANUAL_ACTION_REQUIRED') 
+                            AND lease_expires_at < LOCALTIMESTAMP 
+                            ORDER BY date, release_at NULLS FIRST 
+                            LIMIT :limit 
+                            FOR UPDATE SKIP LOCKED
+                        )
+                        UPDATE releases r0 SET 
+                            lease_owner = :owner, 
+                            lease_expires_at = LOCALTIMESTAMP + make_interval(secs => :leaseSeconds) 
+                        FROM expired 
+                        WHERE r0.id = expired.id 
+                        RETURNING r0.*
+                        """)
+                .bind("owner", owner)
+                .bind("leaseSeconds", lease.toSeconds())
+                .bind("limit", limit)
+                .mapToBean(Release.class)
+                .list());
+    }
+
+    /**
+     * @return whether the lease is still owned by the node and is prolonged
+     */
+    public boolean renewLease(String releaseId, String owner, Duration lease) {
+        return jdbi.withHandle(handle -> handle.createUpdate("""
+                            UPDATE releases SET 
+                                lease_expires_at = LOCALTIMESTAMP + make_interval(secs => :leaseSeconds) 
+                            WHERE id = :id 
+                            AND lease_owner = :owner
+                        """)
+                .bind("id", releaseId)
+                .bind("owner", owner)
+                .bind("leaseSeconds", lease.toSeconds())
+                .execute() > 0);
+    }
+
+    public boolean releaseLease(String releaseId, String owner) {
+        return jdbi.withHandle(handle -> handle.createUpdate("""
+                            UPDATE releases SET 
+                                lease_owner = NULL, 
+                                lease_expires_at = NULL 
+                            WHERE id = :id 
+                            AND lease_owner = :owner
+                        """)
+                .bind("id", releaseId)
+                .bind("owner", owner)
+                .execute() > 0);
+    }
+
+    /**
+     * @return position which is stored with the release, or calculated for releases written before positions
+     */
     public PositionInfo findReleasePosition(String releaseId) {
+        return jdbi.withHandle(handle -> handle.createQuery("""
+                                SELECT 
+                                    position_flag AS item_position, 
+                                    position_index AS index 
+                                FROM releases 
+                                WHERE id = :id 
+                                AND position_index IS NOT NULL
+                        """)
+                .bind("id", releaseId)
+                .mapToBean(PositionInfo.class)
+                .findOne()
+                .orElseGet(() -> calculateReleasePosition(releaseId)));
+    }
+
+    private PositionInfo calculateReleasePosition(String releaseId) {
         return jdbi.withHandle(handle -> handle.createQuery("""
                                 WITH data AS ( 
                                     SELECT 
@@ -170,30 +369,43 @@ public class ReleaseRepository {
                 .one());
     }
 
+    /**
+     * @return value of the latest release of the target which has the key, the lookup either walks the
+     * {@code (release_target_id, date)} index backward or finds releases with the key by the metadata index.
+     * The {@code ??} is the jsonb {@code ?} operator escaped for JDBC, only it can be served by the GIN index,
+     * the {@code ->>} check just keeps skipping keys with a null value.
+     */
     public <T> T findSingleMetadata(String releaseTargetId, String key) {
-        var list = findMetadata(releaseTargetId, key);
-        if (!list.isEmpty()) {
-            var first = list.getFirst();
-            if (first instanceof String s) {
-                return (T) typedParse(s);
-            } else {
-                return (T) first;
-            }
-        }
-
-        return null;
+        return jdbi.withHandle(handle -> handle.createQuery("""
+                                SELECT
+                                    r0.metadata ->> :key
+                                FROM
+                                    releases r0
+                                WHERE
+                                    r0.release_target_id = :releaseTargetId
+                                    AND r0.metadata ?? :key
+                                    AND r0.metadata ->> :key IS NOT NULL
+                                ORDER BY r0."date" DESC
+                                LIMIT 1
+                        """)
+                .bind("releaseTargetId", releaseTargetId)
+                .bind("key", key)
+                .mapTo(String.class)
+                .findOne()
+                .map(value -> (T) typedParse(value))
+                .orElse(null));
     }
 
     public List<Object> findMetadata(String releaseTargetId, String key) {
         return jdbi.withHandle(handle -> handle.createQuery("""
                                 SELECT
-                                    j0.value
+                                    r0.metadata ->> :key
                                 FROM
-                                    releases r0,
-                                    LATERAL json_each_text(r0.metadata) j0
+                                    releases r0
                                 WHERE
                                     r0.release_target_id = :releaseTargetId
-                                    AND j0.key = :key
+                                    AND r0.metadata ?? :key
+                                    AND r0.metadata ->> :key IS NOT NULL
                                 ORDER BY r0."date" DESC
                         """)
                 .bind("releaseTargetId", releaseTargetId)
@@ -202,6 +414,34 @@ public class ReleaseRepository {
                 .list());
     }
 
+    /**
+     * Stores index of every release of the target in order of dates, together with the flag of the first
+     * and the last release, only changed rows are written.
+     */
+    private void updatePositions(Handle handle, String releaseTargetId) {
+        handle.createUpdate("""
+                        UPDATE releases r0 SET 
+                            position_index = p0.row_num, 
+                            position_flag = p0.flag 
+                        FROM (
+                            SELECT 
+                                r1.id, 
+                                row_number() OVER (ORDER BY r1.date ASC) AS row_num, 
+                                CASE 
+                                    WHEN row_number() OVER (ORDER BY r1.date ASC) = 1 THEN 0 
+                                    WHEN row_number() OVER (ORDER BY r1.date ASC) = COUNT(*) OVER () THEN 2 
+                                    ELSE 1 
+                                END AS flag 
+                            FROM releases r1 
+                            WHERE r1.release_target_id = :releaseTargetId
+                        ) p0 
+                        WHERE r0.id = p0.id 
+                        AND (r0.position_index IS DISTINCT FROM p0.row_num OR r0.position_flag IS DISTINCT FROM p0.flag)
+                        """)
+                .bind("releaseTargetId", releaseTargetId)
+                .execute();
+    }
+
     @Slf4j
     @RequiredArgsConstructor
     public static class ReleaseTargetRepository {
@@ -228,6 +468,9 @@ public class ReleaseRepository {
                     .list());
         }
 
+        /**
+         * Reads summaries of release targets, they are maintained by triggers on {@code releases}.
+         */
         public List<ReleaseView> findReleasesByBookId(String bookId) {
             return jdbi.withHandle(handle -> handle.createQuery("SELECT * FROM book_releases WHERE book_id = :bookId")
                     .bind("bookId", bookId)
@@ -9,10 +9,13 @@ import machinum.book.Book;
 import machinum.book.BookRepository;
 import machinum.book.BookRestClient;
 import machinum.chapter.Chapter;
+import machinum.chapter.ChapterIndexCache;
 import machinum.chapter.ChapterJsonlConverter;
 import machinum.exception.AppException;
 import machinum.minio.MinioService;
+import machinum.minio.MinioService.FileInfo;
 import machinum.release.Release;
+import machinum.release.ReleaseCheckpoints;
 import machinum.release.Release.ReleaseStatus;
 import machinum.release.Release.ReleaseTarget;
 import machinum.release.ReleaseRepository;
@@ -21,22 +24,32 @@ import machinum.telegram.TelegramHandler;
 import machinum.website.WebsiteHandler;
 import org.jetbrains.annotations.NotNull;
 
-import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
 import java.util.List;
 
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
-import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Supplier;
 
+import static machinum.release.Release.ReleaseConstants.PAGES_PARAM;
+
 public interface ActionHandler {
 
     String CHAPTERS_KEYWORD = "chapters";
     String HAS_JSONL_CHAPTERS_KEYWORD = "hasJsonlChapters";
+    String PREPARED_AT_KEYWORD = "preparedAt";
 
     HandlerResult handle(ActionContext context);
 
+    /**
+     * Builds artifacts of the release ahead of its time without publishing them, so {@link #handle} only
+     * publishes the prepared artifacts.
+     */
+    default void prepare(ActionContext context) {
+        // Nothing to prepare by default
+    }
+
     @Slf4j
     @RequiredArgsConstructor
     class ActionsHandler {
@@ -49,9 +62,54 @@ public interface ActionHandler {
         private final BookRestClient bookRestClient;
         private final MinioService jsonlMinioService;
         private final ChapterJsonlConverter chapterJsonlConverter;
+        private final ChapterIndexCache chapterIndexCache;
+        private final ReleaseCheckpoints checkpoints;
 
         public HandlerResult handle(Release release) {
             log.debug("Got request to execute action for release: {}", release);
+            var context = createContext(release);
+
+            //TODO return new copy of release in HandlerResult
+            var output = switch (context.getActionType()) {
+                case TELEGRAM, TELEGRAM_AUDIO -> tgHandler.handle(context);
+                case WEBSITE -> websiteHandler.handle(context);
+                default -> throw new IllegalArgumentException("Unknown type: " + context.getActionType());
+            };
+
+            //TODO should we remove it, due Scheduler already have update call?
+            repository.update(release);
+
+            return output;
+        }
+
+        /**
+         * Builds artifacts of the release ahead of its time, they are stored as checkpoints of the release.
+         */
+        public void prepare(Release release) {
+            log.debug("Got request to prepare artifacts for release: {}", release);
+            var context = createContext(release);
+
+            switch (context.getActionType()) {
+                case TELEGRAM, TELEGRAM_AUDIO -> tgHandler.prepare(context);
+                case WEBSITE -> websiteHandler.prepare(context);
+                default -> throw new IllegalArgumentException("Unknown type: " + context.getActionType());
+            }
+
+            // The release is loaded before a long build, and a lease can expire during it, so only the flag
+            // is written over metadata which another node could have changed meanwhile
+            var preparedAt = LocalDateTime.now().toString();
+            release.addMetadata(PREPARED_AT_KEYWORD, preparedAt);
+            repository.patchMetadata(release.getId(), Map.of(PREPARED_AT_KEYWORD, preparedAt));
+        }
+
+        /**
+         * Cleans up after the release is executed, e.g. removes its checkpoints.
+         */
+        public void complete(Release release) {
+            checkpoints.clear(release);
+        }
+
+        private ActionContext createContext(Release release) {
             var actionType = ActionType.of(release.getReleaseActionType());
             var result = repository.findReleasePosition(release.getId());
             var releaseTarget = targetRepository.getById(release.getReleaseTargetId());
@@ -73,17 +131,7 @@ public interface ActionHandler {
                 downloadLocalFile(book, context);
             }
 
-            //TODO return new copy of release in HandlerResult
-            var output = switch (actionType) {
-                case TELEGRAM, TELEGRAM_AUDIO -> tgHandler.handle(context);
-                case WEBSITE -> websiteHandler.handle(context);
-                default -> throw new IllegalArgumentException("Unknown type: " + actionType);
-            };
-
-            //TODO should we remove it, due Scheduler already have update call?
-            repository.update(release);
-
-            return output;
+            return context;
         }
 
         private String getRemoteBookId(String uniqueId, String jsonlFileLink) {
@@ -98,11 +146,29 @@ public interface ActionHandler {
         }
 
         private void downloadLocalFile(Book book, ActionContext context) {
-            // Download and parse JSONL chapters if available
-            try {
-                var fileData = jsonlMinioService.getByKey(book.getJsonlFileLink());
-                var jsonlContent = new String(fileData.data(), StandardCharsets.UTF_8);
-                var chapters = parseChapters(jsonlContent);
+            if (chapterIndexCache.isEnabled()) {
+                // Cheap stat call validates the cached chapters, the file is downloaded only when it's changed
+                var link = book.getJsonlFileLink();
+                var info = jsonlMinioService.stat(link)
+                        .orElseThrow(() -> new AppException("File not found: %s", link));
+                if (chapterIndexCache.accepts(info.contentLength())) {
+                    downloadCachedFile(book, context, info);
+                    return;
+                }
+                log.debug("Chapters are too big to be cached, only the release window is parsed: link={}, size={}",
+                        link, info.contentLength());
+            }
+
+            // Stream JSONL chapters, only the page range of the release is parsed
+            var release = context.getRelease();
+            var pages = Objects.nonNull(release.metadata(PAGES_PARAM)) ? release.toPageRequest() : null;
+            // Handlers also take the first chapter for the first release, so the window starts at index 0
+            int from = Objects.isNull(pages) || pages.first() <= 1 ? 0 : pages.first();
+            int to = Objects.isNull(pages) ? Integer.MAX_VALUE - 1 : pages.second();
+
+            try (var stream = jsonlMinioService.downloadFile(book.getJsonlFileLink())) {
+                var chapters = chapterJsonlConverter.normalize(
+                        requireChapters(chapterJsonlConverter.fromStream(stream, from, to)));
 
                 context.set(CHAPTERS_KEYWORD, chapters);
                 context.set(HAS_JSONL_CHAPTERS_KEYWORD, true);
@@ -112,28 +178,27 @@ public interface ActionHandler {
             }
         }
 
-        private List<Chapter> parseChapters(String jsonlContent) {
-            var chapters = chapterJsonlConverter.fromString(jsonlContent);
-            if(Objects.isNull(chapters) || chapters.isEmpty()) {
-                throw new AppException("Chapters can't be empty");
-            }
-
-            boolean lackOfNumbers = Objects.isNull(chapters.getFirst().getNumber());
-            boolean rawMode = (Objects.isNull(chapters.getFirst().getTranslatedText()) &&
-                    !chapters.getFirst().get("value", "").isBlank());
+        private void downloadCachedFile(Book book, ActionContext context, FileInfo info) {
+            var link = book.getJsonlFileLink();
+            try {
+                var chapters = chapterIndexCache.get(link, info.etag(), info.contentLength(),
+                        () -> jsonlMinioService.downloadFile(link));
 
-            if(lackOfNumbers) {
-                AtomicInteger counter = new AtomicInteger(1);
-                chapters.forEach(chapter -> chapter.setNumber(counter.getAndIncrement()));
+                // Cached chapters are shared between releases, they are normalized once on load
+                context.set(CHAPTERS_KEYWORD, requireChapters(chapters));
+                context.set(HAS_JSONL_CHAPTERS_KEYWORD, true);
+            } catch (Exception e) {
+                log.error("Failed to download or parse JSONL file for book: {}", book.getUniqueId(), e);
+                throw new AppException("Failed to process JSONL chapters", e);
             }
-            if(rawMode) {
-                chapters.forEach(chapter -> {
-                    String value = chapter.get(Chapter.VALUE, "");
-                    String[] result = value.split("\\R", 2);
-
-                    chapter.setTranslatedTitle(result[0]);
-                    chapter.setTranslatedText(result[1].replaceAll("\n", "\n  \n"));
-                });
+        }
+
+        /**
+         * @param chapters chapters of the file, elements outside the release window are {@code null}
+         */
+        private List<Chapter> requireChapters(List<Chapter> chapters) {
+            if(Objects.isNull(chapters) || chapters.isEmpty() || Objects.isNull(chapters.getFirst())) {
+                throw new AppException("Chapters can't be empty");
             }
 
             return chapters;
@@ -0,0 +1,85 @@
+package machinum.scheduler;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Executes release tasks on virtual threads, one lane per release target.
+ * Tasks submitted to the same lane run strictly one after another in submission order,
+ * tasks of different lanes run concurrently, bounded by the configured concurrency.
+ */
+@Slf4j
+public class ReleaseLanes implements AutoCloseable {
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final Map<String, CompletableFuture<Void>> tails = new ConcurrentHashMap<>();
+
+    private final Semaphore permits;
+
+    public ReleaseLanes(int concurrency) {
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("Concurrency must be positive: " + concurrency);
+        }
+        this.permits = new Semaphore(concurrency, true);
+    }
+
+    /**
+     * Appends the task to the tail of the given lane.
+     *
+     * @param laneKey key of the lane, e.g. release target id
+     * @param task    task to execute
+     * @return future which completes once the task has finished
+     */
+    public CompletableFuture<Void> submit(String laneKey, Runnable task) {
+        var next = tails.compute(laneKey, (key, tail) -> {
+            var previous = tail == null ? CompletableFuture.<Void>completedFuture(null) : tail;
+            return previous.handleAsync((unused, e) -> {
+                runWithPermit(key, task);
+                return null;
+            }, executor);
+        });
+        next.whenComplete((unused, e) -> tails.remove(laneKey, next));
+
+        return next;
+    }
+
+    /**
+     * @return number of lanes which have pending or running tasks
+     */
+    public int activeLanes() {
+        return tails.size();
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+
+    /* ============= */
+
+    private void runWithPermit(String laneKey, Runnable task) {
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Lane was interrupted before execution: {}", laneKey);
+            return;
+        }
+
+        try {
+            task.run();
+        } catch (Exception e) {
+            log.error("ERROR: lane={}", laneKey, e);
+        } finally {
+            permits.release();
+        }
+    }
+
+}
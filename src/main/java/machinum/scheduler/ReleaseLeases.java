@@ -0,0 +1,136 @@
+package machinum.scheduler;
+
+import lombok.extern.slf4j.Slf4j;
+import machinum.release.Release;
+import machinum.release.ReleaseRepository;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Leases of releases for running several scheduler nodes against one database.
+ * <p>
+ * A node executes a release only while it holds the lease of the release, the lease is prolonged by
+ * a heartbeat during execution and is returned afterward. When a node dies, its leases expire and the
+ * releases are taken over by other nodes.
+ */
+@Slf4j
+public class ReleaseLeases implements AutoCloseable {
+
+    private final ScheduledExecutorService heartbeat = Executors.newSingleThreadScheduledExecutor();
+
+    private final Set<String> active = ConcurrentHashMap.newKeySet();
+
+    private final LongAdder claims = new LongAdder();
+    private final LongAdder conflicts = new LongAdder();
+    private final LongAdder renewals = new LongAdder();
+    private final LongAdder lost = new LongAdder();
+    private final LongAdder takeovers = new LongAdder();
+
+    private final String nodeId;
+    private final ReleaseRepository repository;
+    private final Duration duration;
+
+    public ReleaseLeases(String nodeId, ReleaseRepository repository, Duration duration) {
+        if (duration.toSeconds() < 3) {
+            throw new IllegalArgumentException("Lease duration must be at least 3 seconds: " + duration);
+        }
+        this.nodeId = nodeId;
+        this.repository = repository;
+        this.duration = duration;
+    }
+
+    public String nodeId() {
+        return nodeId;
+    }
+
+    public Duration duration() {
+        return duration;
+    }
+
+    /**
+     * Runs the task while holding the lease of the release.
+     *
+     * @return {@code false} if the release is leased by another node or is already executed
+     */
+    public boolean runLeased(String releaseId, Runnable task) {
+        if (!repository.claim(releaseId, nodeId, duration)) {
+            conflicts.increment();
+            log.info("Release is leased by another node, skipping: id={}, node={}", releaseId, nodeId);
+            return false;
+        }
+
+        claims.increment();
+        active.add(releaseId);
+        var period = duration.toMillis() / 3;
+        var renewal = heartbeat.scheduleAtFixedRate(() -> renew(releaseId), period, period, TimeUnit.MILLISECONDS);
+        try {
+            task.run();
+            return true;
+        } finally {
+            renewal.cancel(false);
+            active.remove(releaseId);
+            try {
+                repository.releaseLease(releaseId, nodeId);
+            } catch (Exception e) {
+                log.warn("Can't return lease, it expires in {}: id={}, node={}", duration, releaseId, nodeId, e);
+            }
+        }
+    }
+
+    /**
+     * @return releases whose leases are expired, the node owns their leases now
+     */
+    public List<Release> takeOverExpired(int limit) {
+        var releases = repository.claimExpired(nodeId, duration, limit);
+        if (!releases.isEmpty()) {
+            takeovers.add(releases.size());
+            log.info("Took over {} releases with expired leases: node={}", releases.size(), nodeId);
+        }
+
+        return releases;
+    }
+
+    public LeaseStats stats() {
+        return new LeaseStats(nodeId, claims.sum(), conflicts.sum(), renewals.sum(), lost.sum(), takeovers.sum(),
+                active.size());
+    }
+
+    @Override
+    public void close() {
+        heartbeat.shutdownNow();
+    }
+
+    /* ============= */
+
+    private void renew(String releaseId) {
+        try {
+            if (repository.renewLease(releaseId, nodeId, duration)) {
+                renewals.increment();
+            } else {
+                lost.increment();
+                log.warn("Lease is lost during execution: id={}, node={}", releaseId, nodeId);
+            }
+        } catch (Exception e) {
+            log.warn("Can't renew lease: id={}, node={}", releaseId, nodeId, e);
+        }
+    }
+
+    /**
+     * @param claims    number of leases taken by the node
+     * @param conflicts number of releases skipped because of a lease of another node
+     * @param renewals  number of heartbeats
+     * @param lost      number of heartbeats after the lease was taken by another node
+     * @param takeovers number of releases taken over after expiry of leases of other nodes
+     * @param active    number of releases which are executed by the node right now
+     */
+    public record LeaseStats(String nodeId, long claims, long conflicts, long renewals, long lost, long takeovers,
+                             int active) {}
+
+}
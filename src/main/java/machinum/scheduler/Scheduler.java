@@ -1,28 +1,92 @@
 package machinum.scheduler;
 
 import lombok.NonNull;
-import lombok.RequiredArgsConstructor;
 import lombok.Synchronized;
 import lombok.extern.slf4j.Slf4j;
 import machinum.release.Release;
 import machinum.release.ReleaseRepository;
 import machinum.scheduler.ActionHandler.ActionsHandler;
+import machinum.scheduler.ReleaseLeases.LeaseStats;
+import machinum.util.Util;
 
-import java.time.LocalDate;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
 import static machinum.release.Release.ReleaseStatus.EXECUTED;
+import static machinum.scheduler.ActionHandler.PREPARED_AT_KEYWORD;
 import static machinum.util.Util.firstNonNull;
 import static machinum.util.Util.runAsync;
 
 @Slf4j
-@RequiredArgsConstructor
 public class Scheduler implements AutoCloseable {
 
+    /**
+     * Max number of releases with expired leases which are taken over at once.
+     */
+    private static final int TAKEOVER_LIMIT = 10;
+    /**
+     * How often releases within the prepare window are looked up.
+     */
+    private static final Duration PREPARE_PERIOD = Duration.ofMinutes(10);
+
     private final ScheduledExecutorService executor;
     private final ReleaseRepository repository;
     private final ActionsHandler actionHandler;
+    /**
+     * Lanes for {@link ExecutionMode#PARALLEL} mode, {@code null} means that releases are executed one by one.
+     */
+    private final ReleaseLanes lanes;
+    /**
+     * Time of day for releases which don't have an exact release moment.
+     */
+    private final LocalTime releaseTime;
+    /**
+     * Leases for running several nodes, {@code null} means that the node is the only one.
+     */
+    private final ReleaseLeases leases;
+    /**
+     * Artifacts of releases which are due within the window are built ahead of time, zero disables preparation.
+     */
+    private final Duration prepareWindow;
+    private final Set<String> preparing = ConcurrentHashMap.newKeySet();
+    private final TimingWheel wheel;
+
+    public Scheduler(ScheduledExecutorService executor, ReleaseRepository repository, ActionsHandler actionHandler) {
+        this(executor, repository, actionHandler, null, LocalTime.MIDNIGHT);
+    }
+
+    public Scheduler(ScheduledExecutorService executor, ReleaseRepository repository, ActionsHandler actionHandler,
+                     ReleaseLanes lanes, LocalTime releaseTime) {
+        this(executor, repository, actionHandler, lanes, releaseTime, null);
+    }
+
+    public Scheduler(ScheduledExecutorService executor, ReleaseRepository repository, ActionsHandler actionHandler,
+                     ReleaseLanes lanes, LocalTime releaseTime, ReleaseLeases leases) {
+        this(executor, repository, actionHandler, lanes, releaseTime, leases, Duration.ZERO);
+    }
+
+    public Scheduler(ScheduledExecutorService executor, ReleaseRepository repository, ActionsHandler actionHandler,
+                     ReleaseLanes lanes, LocalTime releaseTime, ReleaseLeases leases, Duration prepareWindow) {
+        this.executor = executor;
+        this.repository = repository;
+        this.actionHandler = actionHandler;
+        this.lanes = lanes;
+        this.releaseTime = releaseTime;
+        this.leases = leases;
+        this.prepareWindow = prepareWindow;
+        this.wheel = new TimingWheel(Clock.systemDefaultZone(), Duration.ofSeconds(1), 4096, Util::runAsync);
+        var tick = wheel.tickDuration().toMillis();
+        executor.scheduleAtFixedRate(wheel::advance, tick, tick, TimeUnit.MILLISECONDS);
+    }
 
     public void init() {
         runAsync(() -> {
@@ -32,14 +96,33 @@ public class Scheduler implements AutoCloseable {
                 list.forEach(this::execute);
             }
         });
+        // The database is the source of truth for the wheel, pick up schedules created after the start
+        executor.scheduleAtFixedRate(this::reload, 1, 1, TimeUnit.HOURS);
+        if (Objects.nonNull(leases)) {
+            var period = leases.duration().toSeconds();
+            executor.scheduleAtFixedRate(this::takeOverExpired, period, period, TimeUnit.SECONDS);
+        }
+        if (prepareWindow.isPositive()) {
+            var period = PREPARE_PERIOD.toSeconds();
+            executor.scheduleAtFixedRate(this::prepareUpcoming, 0, period, TimeUnit.SECONDS);
+        }
     }
 
     public void executeAsync(Release release) {
         runAsync(() -> execute(release));
     }
 
+    /**
+     * Schedules releases of the target right after they are created, instead of waiting for the next reload.
+     */
+    public void executeTargetAsync(String releaseTargetId) {
+        runAsync(() -> repository.findAllToExecute().stream()
+                .filter(release -> Objects.equals(release.getReleaseTargetId(), releaseTargetId))
+                .forEach(this::execute));
+    }
+
     public void execute(@NonNull Release release) {
-        LocalDate targetDate = release.getDate();
+        LocalDateTime releaseAt = release.releaseAt(releaseTime);
         if (release.isExecuted()) {
             log.info("Task already executed, skipping: id={}", release.getId());
             return;
@@ -47,28 +130,140 @@ public class Scheduler implements AutoCloseable {
 
         log.info("Scheduling execution of task: id={}, target={}", release.getId(), firstNonNull(release.getReleaseActionType(), release.getReleaseTargetId()));
         String releaseId = release.getId();
+        String releaseTargetId = release.getReleaseTargetId();
 
-        if (targetDate.isEqual(LocalDate.now()) || targetDate.isBefore(LocalDate.now())) {
-            log.info("Task meets day condition, runs immediately: id={}", releaseId);
-            runTask(releaseId);
+        if (!releaseAt.isAfter(LocalDateTime.now())) {
+            log.info("Task meets time condition, runs immediately: id={}", releaseId);
+            wheel.cancel(releaseId);
+            // The time of the given release is trusted, e.g. a manual execution of a future release
+            dispatch(releaseTargetId, releaseId, () -> runTask(releaseId, false));
         } else {
-            long delay = calculateDelay(targetDate);
-            log.info("Scheduling execution: taskId={}, days to wait={}", releaseId, delay);
-            executor.schedule(() -> runTask(releaseId), delay, TimeUnit.DAYS);
+            log.info("Scheduling execution: taskId={}, releaseAt={}, time to wait={}", releaseId, releaseAt,
+                    Duration.between(LocalDateTime.now(), releaseAt));
+            // A previous deadline of the release is replaced, e.g. after its time is edited
+            wheel.schedule(releaseId, deadline(releaseAt), () -> dispatch(releaseTargetId, releaseId,
+                    () -> runTask(releaseId, true)));
         }
     }
 
-    private long calculateDelay(LocalDate targetDate) {
-        return targetDate.toEpochDay() - LocalDate.now().toEpochDay();
+    /**
+     * @return number of releases which are waiting for their time in the wheel
+     */
+    public int pendingCount() {
+        return wheel.size();
+    }
+
+    /**
+     * @return state of the scheduler on this node, lease metrics are empty when the node is the only one
+     */
+    public SchedulerStats stats() {
+        return new SchedulerStats(wheel.size(), preparing.size(), Objects.nonNull(leases) ? leases.stats() : null);
+    }
+
+    /**
+     * Schedules releases which are missing in the wheel or whose time is changed, overdue releases are executed.
+     */
+    private void reload() {
+        try {
+            var list = repository.findAllToExecute().stream()
+                    .filter(release -> wheel.deadline(release.getId())
+                            .map(deadline -> !deadline.equals(deadline(release.releaseAt(releaseTime))))
+                            .orElse(true))
+                    .toList();
+            if (!list.isEmpty()) {
+                log.info("Found new releases to schedule: {} items", list.size());
+                // Overdue releases run in place in serial mode, so the scheduler thread isn't blocked by them
+                list.forEach(this::executeAsync);
+            }
+        } catch (Exception e) {
+            log.error("Can't reload releases to schedule: ", e);
+        }
+    }
+
+    private void takeOverExpired() {
+        try {
+            // Serial mode runs in place, so the scheduler thread isn't blocked by a taken over release
+            leases.takeOverExpired(TAKEOVER_LIMIT)
+                    .forEach(release -> runAsync(() -> dispatch(release.getReleaseTargetId(), release.getId(),
+                            () -> runTask(release.getId(), true))));
+            log.debug("Lease stats: {}", leases.stats());
+        } catch (Exception e) {
+            log.error("Can't take over releases with expired leases: ", e);
+        }
+    }
+
+    /**
+     * Releases which are due within the prepare window and aren't prepared yet, get their artifacts built
+     * in advance.
+     */
+    private void prepareUpcoming() {
+        try {
+            var now = LocalDateTime.now();
+            var until = now.plus(prepareWindow);
+            var list = repository.findAllToExecute().stream()
+                    .filter(release -> {
+                        var releaseAt = release.releaseAt(releaseTime);
+                        return releaseAt.isAfter(now) && !releaseAt.isAfter(until);
+                    })
+                    .filter(release -> !release.hasMetadata(PREPARED_AT_KEYWORD))
+                    .filter(release -> preparing.add(release.getId()))
+                    .toList();
+            if (!list.isEmpty()) {
+                log.info("Prepare artifacts for upcoming releases: {} items", list.size());
+                // Serial mode runs in place, so the scheduler thread isn't blocked by a long preparation
+                list.forEach(release -> runAsync(() -> dispatch(release.getReleaseTargetId(), release.getId(),
+                        () -> prepareTask(release.getId()))));
+            }
+        } catch (Exception e) {
+            log.error("Can't prepare upcoming releases: ", e);
+        }
+    }
+
+    /**
+     * Runs the task in place for serial mode, or appends it to the lane of its release target for parallel mode,
+     * so releases of one target are still executed in order. Preparation goes through the same lane as execution,
+     * so a release is never prepared and executed at the same time by this node.
+     */
+    private void dispatch(String releaseTargetId, String releaseId, Runnable task) {
+        if (Objects.isNull(lanes)) {
+            runSerially(task);
+        } else {
+            lanes.submit(firstNonNull(releaseTargetId, releaseId), task);
+        }
     }
 
     @Synchronized
-    private void runTask(String releaseId) {
+    private void runSerially(Runnable task) {
+        task.run();
+    }
+
+    /**
+     * Another node can execute the same release at the same time, so the release is executed only under its lease.
+     */
+    private void runTask(String releaseId, boolean checkDue) {
+        if (Objects.isNull(leases)) {
+            handleTask(releaseId, checkDue);
+        } else {
+            leases.runLeased(releaseId, () -> handleTask(releaseId, checkDue));
+        }
+    }
+
+    /**
+     * @param checkDue whether the stored time of the release is checked, a release which is moved to a later time
+     *                 is scheduled again instead of being executed early
+     */
+    private void handleTask(String releaseId, boolean checkDue) {
         repository.findById(releaseId).ifPresentOrElse(release -> {
             if (release.isExecuted()) {
                 log.info("Task already executed during check, skipping: id={}", releaseId);
                 return;
             }
+            if (checkDue && release.releaseAt(releaseTime).isAfter(LocalDateTime.now())) {
+                log.info("Task isn't due yet, scheduling it again: id={}, releaseAt={}", releaseId,
+                        release.releaseAt(releaseTime));
+                execute(release);
+                return;
+            }
 
             try {
                 log.info("Execution task: id={}", releaseId);
@@ -77,6 +272,7 @@ public class Scheduler implements AutoCloseable {
                     release.status(EXECUTED);
                     repository.markAsExecuted(releaseId);
                     log.info("Executed task: id={}", releaseId);
+                    actionHandler.complete(release);
                 } else if(result.hasNoChanges()){
                     log.debug("Release still awaits of manual action from user: {}", release);
                 } else {
@@ -91,11 +287,89 @@ public class Scheduler implements AutoCloseable {
         }, () -> log.warn("Release with id={} not found", releaseId));
     }
 
+    /**
+     * A failed preparation isn't an error of the release, the release builds everything itself at its time.
+     * Preparation is leased like execution, so nodes don't build the same artifacts at the same time, a release
+     * leased by another node is skipped. A lease which expires during preparation can't get the release executed
+     * early, a taken over release is checked against its time, see {@link #handleTask}.
+     */
+    private void prepareTask(String releaseId) {
+        try {
+            if (Objects.isNull(leases)) {
+                prepareRelease(releaseId);
+            } else {
+                leases.runLeased(releaseId, () -> prepareRelease(releaseId));
+            }
+        } catch (Exception e) {
+            log.warn("Can't prepare artifacts of task, they are built at release time: id={}", releaseId, e);
+        } finally {
+            preparing.remove(releaseId);
+        }
+    }
+
+    /**
+     * The release is read under the lease, so a release prepared meanwhile by another node is skipped.
+     */
+    private void prepareRelease(String releaseId) {
+        repository.findById(releaseId)
+                .filter(release -> !release.isExecuted())
+                .filter(release -> !release.hasMetadata(PREPARED_AT_KEYWORD))
+                .ifPresent(release -> {
+                    log.info("Prepare artifacts of task: id={}, releaseAt={}", releaseId,
+                            release.releaseAt(releaseTime));
+                    actionHandler.prepare(release);
+                    log.info("Prepared artifacts of task: id={}", releaseId);
+                });
+    }
+
+    private static Instant deadline(LocalDateTime releaseAt) {
+        return releaseAt.atZone(ZoneId.systemDefault()).toInstant();
+    }
+
     @Override
     public void close() {
         if (!executor.isShutdown()) {
             executor.shutdown();
         }
+        if (Objects.nonNull(lanes)) {
+            lanes.close();
+        }
+        if (Objects.nonNull(leases)) {
+            leases.close();
+        }
+    }
+
+    /**
+     * @param pending   number of releases which are waiting for their time in the wheel
+     * @param preparing number of releases whose artifacts are being prepared
+     * @param leases    lease metrics of the node, {@code null} without leases
+     */
+    public record SchedulerStats(int pending, int preparing, LeaseStats leases) {}
+
+    public enum ExecutionMode {
+
+        /**
+         * Every release is executed one by one, in a single lane.
+         */
+        SERIAL,
+
+        /**
+         * Releases of different targets are executed concurrently, releases of one target keep their order.
+         */
+        PARALLEL
+        ;
+
+        public static ExecutionMode of(String name) {
+            var localName = name.toUpperCase();
+            for (var mode : values()) {
+                if (localName.equals(mode.name())) {
+                    return mode;
+                }
+            }
+
+            return SERIAL;
+        }
+
     }
 
 }
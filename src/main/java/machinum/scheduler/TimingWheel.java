@@ -0,0 +1,183 @@
+package machinum.scheduler;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+
+/**
+ * Hashed timing wheel for release deadlines.
+ * <p>
+ * Every pending task costs one small object in a bucket, scheduling and cancellation are O(1), and
+ * a tick touches only one bucket, so the wheel can hold thousands of releases while firing them within
+ * one tick of their deadline. The wheel doesn't own a thread: {@link #advance()} must be called
+ * periodically from a single ticker thread, expired tasks are handed over to the dispatcher.
+ */
+@Slf4j
+public class TimingWheel {
+
+    private final Clock clock;
+    private final long tickMillis;
+    private final int mask;
+    private final List<List<Timeout>> buckets;
+    private final Executor dispatcher;
+    private final long startTime;
+
+    private final Queue<Timeout> pending = new ConcurrentLinkedQueue<>();
+    private final Map<String, Timeout> timeouts = new ConcurrentHashMap<>();
+
+    /**
+     * Index of the next tick to process, is accessed only under the wheel's lock.
+     */
+    private long tick;
+
+    public TimingWheel(Clock clock, Duration tickDuration, int wheelSize, Executor dispatcher) {
+        if (Integer.bitCount(wheelSize) != 1) {
+            throw new IllegalArgumentException("Wheel size must be a power of two: " + wheelSize);
+        }
+        this.clock = clock;
+        this.tickMillis = Math.max(1, tickDuration.toMillis());
+        this.mask = wheelSize - 1;
+        this.dispatcher = dispatcher;
+        this.startTime = clock.millis();
+        this.buckets = new ArrayList<>(wheelSize);
+        for (int i = 0; i < wheelSize; i++) {
+            buckets.add(new ArrayList<>());
+        }
+    }
+
+    /**
+     * Schedules the task, a previously scheduled task with the same key is replaced.
+     *
+     * @param key      unique key of the task, e.g. release id
+     * @param deadline moment when the task must be fired
+     * @param task     task to fire
+     */
+    public void schedule(String key, Instant deadline, Runnable task) {
+        var timeout = new Timeout(key, deadline.toEpochMilli(), task);
+        var previous = timeouts.put(key, timeout);
+        if (previous != null) {
+            previous.cancelled = true;
+        }
+        pending.add(timeout);
+    }
+
+    public boolean cancel(String key) {
+        var timeout = timeouts.remove(key);
+        if (timeout != null) {
+            timeout.cancelled = true;
+            return true;
+        }
+
+        return false;
+    }
+
+    public boolean contains(String key) {
+        return timeouts.containsKey(key);
+    }
+
+    /**
+     * @return deadline of the pending task, or empty if there's no such task
+     */
+    public Optional<Instant> deadline(String key) {
+        return Optional.ofNullable(timeouts.get(key))
+                .map(timeout -> Instant.ofEpochMilli(timeout.deadline));
+    }
+
+    /**
+     * @return number of pending tasks
+     */
+    public int size() {
+        return timeouts.size();
+    }
+
+    public Duration tickDuration() {
+        return Duration.ofMillis(tickMillis);
+    }
+
+    /**
+     * Processes all ticks up to the current moment and fires expired tasks.
+     */
+    public synchronized void advance() {
+        var targetTick = (clock.millis() - startTime) / tickMillis;
+        transferPending();
+
+        while (tick <= targetTick) {
+            expire(buckets.get((int) (tick & mask)));
+            tick++;
+        }
+    }
+
+    /* ============= */
+
+    private void transferPending() {
+        Timeout timeout;
+        while ((timeout = pending.poll()) != null) {
+            if (timeout.cancelled) {
+                continue;
+            }
+
+            // Round up, so a task is never fired before its deadline
+            long deadlineTick = Math.ceilDiv(timeout.deadline - startTime, tickMillis);
+            if (deadlineTick < tick) {
+                // The tick of the deadline is already processed, fire the task without waiting for a round
+                timeouts.remove(timeout.key, timeout);
+                fire(timeout);
+                continue;
+            }
+
+            timeout.rounds = (deadlineTick - tick) / buckets.size();
+            buckets.get((int) (deadlineTick & mask)).add(timeout);
+        }
+    }
+
+    private void expire(List<Timeout> bucket) {
+        for (Iterator<Timeout> iterator = bucket.iterator(); iterator.hasNext(); ) {
+            var timeout = iterator.next();
+            if (timeout.cancelled) {
+                iterator.remove();
+            } else if (timeout.rounds <= 0) {
+                iterator.remove();
+                timeouts.remove(timeout.key, timeout);
+                fire(timeout);
+            } else {
+                timeout.rounds--;
+            }
+        }
+    }
+
+    private void fire(Timeout timeout) {
+        try {
+            dispatcher.execute(timeout.task);
+        } catch (Exception e) {
+            log.error("Can't dispatch expired task: key={}", timeout.key, e);
+        }
+    }
+
+    private static class Timeout {
+
+        private final String key;
+        private final long deadline;
+        private final Runnable task;
+        private volatile boolean cancelled;
+        private long rounds;
+
+        private Timeout(String key, long deadline, Runnable task) {
+            this.key = key;
+            this.deadline = deadline;
+            this.task = task;
+        }
+
+    }
+
+}
@@ -0,0 +1,255 @@
+package machinum.telegram;
+
+import lombok.extern.slf4j.Slf4j;
+import machinum.audio.TTSRestClient.Metadata;
+import machinum.exception.AppException;
+import machinum.telegram.TelegramAudio.FileMetadata;
+import machinum.util.CheckedSupplier;
+import machinum.util.ZipUtil.LazyEntry;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Prepares audio files of a release concurrently with their upload.
+ * <p>
+ * The join of the first file and the enhancement of the rest files (in batches) are started at once,
+ * files are handed to the uploader in order as soon as they are ready. A batch is started only when the
+ * size of files which are produced, but not taken by the uploader yet, fits into the limit.
+ */
+@Slf4j
+public class AudioPipeline {
+
+    private static final int KB = 1024;
+
+    private static final Comparator<FileMetadata> BY_FILENAME =
+            Comparator.comparing(FileMetadata::getFilename, Comparator.nullsFirst(Comparator.naturalOrder()));
+
+    private final TelegramAudio telegramAudio;
+
+    /**
+     * Number of files which are enhanced by one request to TTS service.
+     */
+    private final int batchSize;
+
+    /**
+     * Max size of source files which are processed or wait for upload, in kilobytes.
+     */
+    private final int maxInFlight;
+
+    /**
+     * @param maxInFlightBytes max size of files which are processed or wait for upload, in bytes
+     */
+    public AudioPipeline(TelegramAudio telegramAudio, int batchSize, long maxInFlightBytes) {
+        this.telegramAudio = telegramAudio;
+        this.batchSize = Math.max(batchSize, 1);
+        this.maxInFlight = Math.clamp(maxInFlightBytes / KB, 1, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Starts processing of files, entries must be readable until the returned run is closed.
+     *
+     * @param first the first file of release, it's joined with the advertising and the disclaimer
+     * @param rest  files which are enhanced as is
+     */
+    public Run start(String fileName, Metadata metadata, LazyEntry first, List<LazyEntry> rest, byte[] coverArt) {
+        return start(fileName, metadata, first, rest, coverArt, Store.NONE);
+    }
+
+    /**
+     * @param store files which are already produced, e.g. by a failed attempt of the release
+     */
+    public Run start(String fileName, Metadata metadata, LazyEntry first, List<LazyEntry> rest, byte[] coverArt,
+                     Store store) {
+        var run = new Run(1 + rest.size());
+        run.expectedSizes.add(first.size());
+        rest.forEach(entry -> run.expectedSizes.add(entry.size()));
+
+        run.executor.submit(() -> {
+            try {
+                run.acquire(0, 1);
+                run.executor.submit(() -> run.complete(0, () -> restoreOrProduce(store, List.of(first), 1, () ->
+                        List.of(telegramAudio.putTogether(fileName, metadata, Boolean.TRUE, first.readAllBytes(), coverArt)))));
+
+                for (int from = 0; from < rest.size(); from += batchSize) {
+                    var batch = rest.subList(from, Math.min(from + batchSize, rest.size()));
+                    // Numbers of files start from _0002, the first file is _0001
+                    var number = from + 2;
+                    run.acquire(from + 1, batch.size());
+                    run.executor.submit(() -> run.complete(number - 1, () -> restoreOrProduce(store, batch, number, () ->
+                            telegramAudio.enhance(fileName, metadata, batch, coverArt, number))));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                run.failAll(e);
+            }
+        });
+
+        return run;
+    }
+
+    /**
+     * A batch is restored only as a whole, otherwise it's produced again and stored.
+     *
+     * @param number number of the first file of the batch
+     */
+    private List<FileMetadata> restoreOrProduce(Store store, List<LazyEntry> batch, int number,
+                                                CheckedSupplier<List<FileMetadata>> producer) throws Exception {
+        var restored = new ArrayList<FileMetadata>();
+        for (int i = 0; i < batch.size(); i++) {
+            store.find(number + i, batch.get(i)).ifPresent(restored::add);
+        }
+        if (restored.size() == batch.size()) {
+            return restored;
+        }
+
+        var result = producer.get().stream()
+                .sorted(BY_FILENAME)
+                .toList();
+        if (result.size() == batch.size()) {
+            for (int i = 0; i < result.size(); i++) {
+                store.save(number + i, batch.get(i), result.get(i));
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Files of one release in their order, {@link #next()} waits until the next file is ready.
+     */
+    public class Run implements Iterator<FileMetadata>, AutoCloseable {
+
+        private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+        private final Semaphore inFlight = new Semaphore(maxInFlight);
+
+        private final List<CompletableFuture<FileMetadata>> files;
+        private final int[] permits;
+        private final List<Long> expectedSizes = new ArrayList<>();
+        private int position;
+
+        private Run(int size) {
+            this.files = new ArrayList<>(size);
+            this.permits = new int[size];
+            for (int i = 0; i < size; i++) {
+                files.add(new CompletableFuture<>());
+            }
+        }
+
+        /**
+         * @return sizes of source files, the actual files can be a bit bigger, {@code -1} if a size is unknown
+         */
+        public List<Long> expectedSizes() {
+            return expectedSizes;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return position < files.size();
+        }
+
+        @Override
+        public FileMetadata next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            var index = position++;
+            try {
+                return files.get(index).join();
+            } catch (CompletionException e) {
+                return ExceptionUtils.rethrow(Objects.requireNonNullElse(e.getCause(), e));
+            } finally {
+                inFlight.release(permits[index]);
+                permits[index] = 0;
+            }
+        }
+
+        @Override
+        public void close() {
+            failAll(new AppException("Audio pipeline is closed"));
+            executor.shutdownNow();
+        }
+
+        /* ============= */
+
+        private void acquire(int from, int count) throws InterruptedException {
+            var required = 0L;
+            for (int i = from; i < from + count; i++) {
+                permits[i] = Math.clamp(Math.ceilDiv(Math.max(expectedSizes.get(i), 1), KB), 1, maxInFlight);
+                required += permits[i];
+            }
+
+            if (required > maxInFlight) {
+                // A batch bigger than the limit would wait forever, let it go alone
+                Arrays.fill(permits, from, from + count, 0);
+                permits[from] = maxInFlight;
+                required = maxInFlight;
+            }
+            inFlight.acquire((int) required);
+        }
+
+        private void complete(int from, CheckedSupplier<List<FileMetadata>> supplier) {
+            try {
+                var result = supplier.get().stream()
+                        .sorted(BY_FILENAME)
+                        .toList();
+                var expected = from == 0 ? 1 : Math.min(batchSize, files.size() - from);
+                if (result.size() != expected) {
+                    throw new AppException("Expected %s audio files, but got: %s", expected, result.size());
+                }
+
+                for (int i = 0; i < result.size(); i++) {
+                    files.get(from + i).complete(result.get(i));
+                }
+                log.debug("Audio files are ready: from={}, count={}", from, result.size());
+            } catch (Exception e) {
+                log.error("Can't prepare audio files: from={}", from, e);
+                failAll(e);
+            }
+        }
+
+        private void failAll(Exception e) {
+            files.forEach(file -> file.completeExceptionally(e));
+        }
+
+    }
+
+    /**
+     * Produced files, files are identified by their number and their source.
+     */
+    public interface Store {
+
+        Store NONE = new Store() {
+
+            @Override
+            public Optional<FileMetadata> find(int number, LazyEntry source) {
+                return Optional.empty();
+            }
+
+            @Override
+            public void save(int number, LazyEntry source, FileMetadata file) {
+                //ignore
+            }
+
+        };
+
+        Optional<FileMetadata> find(int number, LazyEntry source);
+
+        void save(int number, LazyEntry source, FileMetadata file);
+
+    }
+
+}
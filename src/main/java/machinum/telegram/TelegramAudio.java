@@ -11,10 +11,12 @@ import machinum.audio.TextXmlReader.TextInfo;
 import machinum.exception.AppException;
 import machinum.minio.MinioService;
 import machinum.util.Util;
+import machinum.util.ZipUtil.LazyEntry;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -22,6 +24,7 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 import java.util.zip.CRC32;
@@ -125,8 +128,17 @@ public class TelegramAudio {
                 .build();
     }
 
+    public List<FileMetadata> enhance(String fileNameTemplate, Metadata metadata, List<LazyEntry> files, byte[] coverArtBytes) {
+        //e.g. start from _0002
+        return enhance(fileNameTemplate, metadata, files, coverArtBytes, 2);
+    }
+
+    /**
+     * @param firstNumber number of the first file in the output file names, e.g. {@code 2} for {@code _0002}
+     */
     @SneakyThrows
-    public List<FileMetadata> enhance(String fileNameTemplate, Metadata metadata, List<byte[]> files, byte[] coverArtBytes) {
+    public List<FileMetadata> enhance(String fileNameTemplate, Metadata metadata, List<LazyEntry> files,
+                                      byte[] coverArtBytes, int firstNumber) {
         var targetCoverArt = coverArtBytes.length == 0 ? coverArt.content() : coverArtBytes;
         if (coverArtBytes.length == 0) {
             log.info("No cover art provided. Using default cover art.");
@@ -136,14 +148,13 @@ public class TelegramAudio {
 
         var localTemplate = fileNameTemplate.replaceAll(".mp3$", "");
 
-        record TempObj(int index, byte[] bytes){}
+        record TempObj(int index, LazyEntry entry){}
 
         var targetFiles = IntStream.range(0, files.size())
                 .filter(i -> i <= files.size())
-                //e.g. start from _0002
-                .mapToObj(i -> new TempObj(i + 2, files.get(i)))
+                .mapToObj(i -> new TempObj(i + firstNumber, files.get(i)))
                 .collect(Collectors.toMap(o -> "%s_%04d.mp3".formatted(localTemplate, o.index()),
-                        TempObj::bytes, (f, s) -> f, LinkedHashMap::new));
+                        o -> (Supplier<InputStream>) o.entry()::open, (f, s) -> f, LinkedHashMap::new));
 
         var zipBytes = ttsClient.enhanceFiles(targetCoverArt, targetFiles, "podcast", metadata);
         var enhancedFiles = readZipFile(zipBytes);
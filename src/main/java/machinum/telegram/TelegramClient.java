@@ -18,6 +18,7 @@ import org.jetbrains.annotations.NotNull;
 import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Objects;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -80,6 +81,36 @@ public class TelegramClient implements AutoCloseable {
                 .result();
     }
 
+    /**
+     * Sends audio files as soon as they are produced, files are grouped into chunks by their expected sizes,
+     * so a chunk is sent before the following files are ready.
+     *
+     * @param audioRecords  files in their order, {@link Iterator#next()} can wait until a file is ready
+     * @param expectedSizes expected sizes of files in bytes, {@code -1} if a size is unknown
+     */
+    @SneakyThrows
+    public Response sendAudioFilesWithMessage(@NonNull String chatId, @NonNull Caption messageText,
+                                              @NonNull String contentType, @NonNull String performer,
+                                              @NonNull Iterator<AudioRecord> audioRecords,
+                                              @NonNull List<Long> expectedSizes, byte[] thumbnail) {
+        return AudioSender.create(b -> b
+                    .chatId(chatId)
+                    .messageText(messageText.getText())
+                    .parseMode(messageText.getParseMode())
+                    .contentType(contentType)
+                    .performer(performer)
+                    .pendingRecords(audioRecords)
+                    .expectedSizes(expectedSizes)
+                    .thumbnail(thumbnail)
+                    .objectMapper(objectMapper)
+                    .bot(bot)
+                )
+                .validate()
+                .planChunks()
+                .processPendingChunks()
+                .result();
+    }
+
     @SneakyThrows
     public Response sendAudioFileWithMessage(@NonNull String chatId, @NonNull String messageText,
                                              @NonNull String contentType, @NonNull String performer,
@@ -382,20 +413,31 @@ public class TelegramClient implements AutoCloseable {
         String contentType;
         String performer;
         List<AudioRecord> audioRecords;
+        /**
+         * Files which are produced while previous chunks are sent, used instead of {@link #audioRecords}.
+         */
+        Iterator<AudioRecord> pendingRecords;
+        List<Long> expectedSizes;
         byte[] thumbnail;
         ObjectMapper objectMapper;
         TelegramBot bot;
 
         List<List<AudioRecord>> audioChunks = new ArrayList<>();
+        List<Integer> plannedChunks = new ArrayList<>();
         AtomicInteger replyMessageId = new AtomicInteger();
         AtomicReference<MessagesResponse> firstSuccessfulResponse = new AtomicReference<>();
+        /**
+         * Thumbnail is the same for every file, so it's resized once per sending.
+         */
+        AtomicReference<byte[]> resizedThumbnail = new AtomicReference<>();
 
         public static AudioSender create(Function<AudioSender.AudioSenderBuilder, AudioSender.AudioSenderBuilder> creator) {
             return creator.apply(builder()).build() ;
         }
 
         public AudioSender validate() {
-            if (audioRecords.isEmpty()) {
+            var isEmpty = Objects.isNull(pendingRecords) ? audioRecords.isEmpty() : !pendingRecords.hasNext();
+            if (isEmpty) {
                 throw new IllegalArgumentException("No files were provided, please use another method");
             }
             return this;
@@ -423,13 +465,79 @@ public class TelegramClient implements AutoCloseable {
             return this;
         }
 
+        /**
+         * Same rules as {@link #splitToChunks()}, but by expected sizes, the result is the number of files
+         * per chunk.
+         */
+        public AudioSender planChunks() {
+            int currentChunkSize = 0;
+            long currentChunkSizeBytes = 0;
+
+            for (var fileSize : expectedSizes) {
+                var localFileSize = Math.max(fileSize, 0);
+                if (currentChunkSize > 0 &&
+                        (currentChunkSize >= MAX_FILES_PER_GROUP || currentChunkSizeBytes + localFileSize > MAX_REQUEST_SIZE_BYTES)) {
+                    plannedChunks.add(currentChunkSize);
+                    currentChunkSize = 0;
+                    currentChunkSizeBytes = 0;
+                }
+
+                currentChunkSize++;
+                currentChunkSizeBytes += localFileSize;
+            }
+
+            plannedChunks.add(currentChunkSize);
+            return this;
+        }
+
+        /**
+         * Sends a chunk as soon as its last planned file is ready, without waiting for the next file, so
+         * the upload overlaps with preparation of the following files. A chunk is closed earlier than planned
+         * only when the actual files don't fit into the request size, so the number of chunks is final only
+         * at the last one, which is recognized by the number of expected files.
+         */
+        @SneakyThrows
+        public AudioSender processPendingChunks() {
+            replyMessageId.set(-1);
+            var currentChunk = new ArrayList<AudioRecord>();
+            long currentChunkSizeBytes = 0;
+            int index = 0;
+            int files = 0;
+
+            while (pendingRecords.hasNext()) {
+                var audioRecord = pendingRecords.next();
+                long fileSize = audioRecord.content().length;
+
+                if (!currentChunk.isEmpty() && currentChunkSizeBytes + fileSize > MAX_REQUEST_SIZE_BYTES) {
+                    sendChunk(currentChunk, index++, false);
+                    currentChunk = new ArrayList<>();
+                    currentChunkSizeBytes = 0;
+                }
+
+                currentChunk.add(audioRecord);
+                currentChunkSizeBytes += fileSize;
+                files++;
+
+                if (currentChunk.size() >= plannedChunkSize(index)) {
+                    sendChunk(currentChunk, index++, files >= expectedSizes.size());
+                    currentChunk = new ArrayList<>();
+                    currentChunkSizeBytes = 0;
+                }
+            }
+
+            if (!currentChunk.isEmpty()) {
+                sendChunk(currentChunk, index, true);
+            }
+            return this;
+        }
+
         @SneakyThrows
         public AudioSender processChunks() {
             for (int i = 0; i < audioChunks.size(); i++) {
                 var chunk = audioChunks.get(i);
                 boolean isFirstChunk = (i == 0);
 
-                var sendRequest = buildRequest(chunk, isFirstChunk, i);
+                var sendRequest = buildRequest(chunk, isFirstChunk, i, audioChunks.size());
                 if(i == 0) {
                     replyMessageId.set(103);
                 }
@@ -456,7 +564,36 @@ public class TelegramClient implements AutoCloseable {
             return Response.of(messageId, jsonNode);
         }
 
-        private SendMediaGroup buildRequest(List<AudioRecord> chunk, boolean isFirstChunk, int index) {
+        /**
+         * @param last whether no files follow, only then the total is put into the caption, before it the number
+         *             of chunks can still grow
+         */
+        private void sendChunk(List<AudioRecord> chunk, int index, boolean last) throws InterruptedException {
+            var total = last ? Integer.valueOf(index + 1) : null;
+            var response = executeRequestSafely(buildRequest(chunk, index == 0, index, total), index);
+
+            if (index == 0) {
+                firstSuccessfulResponse.set(response);
+                replyMessageId.set(extractReplyMessageId(response));
+            }
+
+            log.info("Successfully sent media group chunk {}, last={}.", index + 1, last);
+
+            if (!last) {
+                Thread.sleep(5_000 + (index * 1_000L));
+            }
+        }
+
+        private int plannedChunkSize(int index) {
+            return index < plannedChunks.size() ? plannedChunks.get(index) : MAX_FILES_PER_GROUP;
+        }
+
+        /**
+         * @param total number of chunks, {@code null} if it isn't known yet
+         */
+        private SendMediaGroup buildRequest(List<AudioRecord> chunk, boolean isFirstChunk, int index, Integer total) {
+            var preview = resizedThumbnail.updateAndGet(current ->
+                    Objects.nonNull(current) ? current : TelegramThumbnailer.toThumbnail(thumbnail));
             var mediaDocuments = chunk.stream()
                     .map(audioRecord -> new InputMediaAudio(audioRecord.content())
                             .fileName(audioRecord.filename())
@@ -464,15 +601,17 @@ public class TelegramClient implements AutoCloseable {
                             .performer(performer)
                             .title(audioRecord.title())
                             .duration(audioRecord.duration())
-                            .thumbnail(TelegramThumbnailer.toThumbnail(thumbnail)))
+                            .thumbnail(preview))
                     .toArray(InputMedia[]::new);
 
             if (mediaDocuments.length > 0) {
                 String caption;
                 if(isFirstChunk) {
                     caption = messageText;
+                } else if (Objects.isNull(total)) {
+                    caption = String.valueOf(index);
                 } else {
-                    caption = "%s/%s".formatted(index, audioChunks.size() - 1);
+                    caption = "%s/%s".formatted(index, total - 1);
                 }
 
                 ((InputMediaAudio) mediaDocuments[mediaDocuments.length - 1])
@@ -3,17 +3,24 @@ package machinum.telegram;
 import static machinum.release.Release.ReleaseConstants.PAGES_PARAM;
 import static machinum.telegram.TelegramHandler.TelegramConstants.TELEGRAM_BOOK_ID;
 import static machinum.telegram.TelegramHandler.TelegramConstants.TELEGRAM_CHAPTER_ID;
+import static machinum.telegram.TelegramClient.MPEG_CONTENT_TYPE;
 import static machinum.telegram.TelegramProperties.ChatType.of;
-import static machinum.util.ZipUtil.readZipFile;
+import static machinum.telegram.TelegramService.EPUB_CONTENT_TYPE;
+import static machinum.util.Util.sha256;
+import static machinum.util.ZipUtil.openZipFile;
+import static machinum.util.ZipUtil.readZipArchive;
 
 import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Pattern;
 import lombok.AccessLevel;
 import lombok.AllArgsConstructor;
@@ -21,6 +28,7 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.RequiredArgsConstructor;
+import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
 import machinum.audio.CoverArt;
 import machinum.audio.TTSRestClient.Metadata;
@@ -30,17 +38,22 @@ import machinum.book.BookRestClient;
 import machinum.chapter.Chapter;
 import machinum.exception.AppException;
 import machinum.image.ImageRepository;
-import machinum.image.ImageUtil;
+import machinum.image.ImageVariantService;
 import machinum.image.cover.CoverService;
 import machinum.image.cover.CoverService.CoverInfo;
 import machinum.markdown.MarkdownConverter;
 import machinum.pandoc.PandocRestClient;
 import machinum.pandoc.PandocRestClient.PandocRequest;
+import machinum.release.Release;
+import machinum.release.ReleaseCheckpoints;
+import machinum.release.ReleaseCheckpoints.Artifact;
 import machinum.release.ReleaseRepository;
 import machinum.scheduler.ActionHandler;
 import machinum.telegram.TelegramAudio.FileMetadata;
 import machinum.telegram.TelegramProperties.ChatType;
 import machinum.util.Pair;
+import machinum.util.ZipUtil.LazyEntry;
+import machinum.util.ZipUtil.ZipArchive;
 
 /**
  * Instance is used for interacting with the telegram API for scheduled releases.
@@ -59,13 +72,15 @@ public class TelegramHandler implements ActionHandler {
     private final TelegramProperties telegramProperties;
     private final ReleaseRepository repository;
     private final ImageRepository imageRepository;
+    private final ImageVariantService variantService;
     private final BookRestClient bookRestClient;
     private final MarkdownConverter markdownConverter;
     private final PandocRestClient pandocRestClient;
     private final CoverService coverService;
-    private final TelegramAudio telegramAudio;
+    private final AudioPipeline audioPipeline;
     private final TextInfo textInfo;
     private final CoverArt coverArt;
+    private final ReleaseCheckpoints checkpoints;
 
     /**
      * Handles the action context based on whether it's the first or subsequent release.
@@ -91,6 +106,23 @@ public class TelegramHandler implements ActionHandler {
         return HandlerResult.executed();
     }
 
+    /**
+     * Builds the EPUB or audio files of the release ahead of its time, they are kept as checkpoints,
+     * so the release itself only publishes them.
+     */
+    @Override
+    public void prepare(ActionContext context) {
+        if (isPublished(context, TELEGRAM_CHAPTER_ID)) {
+            return;
+        }
+
+        if (ActionType.TELEGRAM.equals(context.getActionType())) {
+            buildEpub(context, resolveTgContext(context));
+        } else if (ActionType.TELEGRAM_AUDIO.equals(context.getActionType())) {
+            prepareAudio(context);
+        }
+    }
+
     /* ============= */
 
     public static String formatDate(LocalDate now) {
@@ -108,13 +140,17 @@ public class TelegramHandler implements ActionHandler {
      * @param context The ActionContext containing the Book to be released.
      */
     private void releaseBook(ActionContext context) {
+        if (isPublished(context, TELEGRAM_BOOK_ID)) {
+            return;
+        }
+
         var imageId = context.getBook().getImageId();
         var originImageId = context.getBook().getOriginImageId();
         var chatType = of(context.getReleaseTarget().getMetadata().getOrDefault(TELEGRAM_CHAT_TYPE, "test").toString());
         var chatId = telegramProperties.getChatId(chatType);
         var images = imageRepository.findByIds(List.of(imageId, originImageId)).stream()
                 .map(image -> image.toBuilder()
-                        .data(ImageUtil.compressImage(image.getData(), MAX_SIZE))
+                        .data(variantService.fit(image, MAX_SIZE))
                         .build())
                 .toList();
         var response = telegramService.publishNewBook(chatId, context.getBook(), images);
@@ -122,6 +158,7 @@ public class TelegramHandler implements ActionHandler {
         context.set(TELEGRAM_BOOK_ID, tgBookId);
 
         context.getRelease().addMetadata(TELEGRAM_BOOK_ID, tgBookId);
+        checkpoints.saveProgress(context.getRelease(), TELEGRAM_BOOK_ID);
     }
 
     /**
@@ -130,8 +167,36 @@ public class TelegramHandler implements ActionHandler {
      * @param context The ActionContext containing the Book and Release to be released.
      */
     private void releaseChapters(ActionContext context) {
+        if (isPublished(context, TELEGRAM_CHAPTER_ID)) {
+            return;
+        }
+
         var tgContext = resolveTgContext(context);
+        var epub = buildEpub(context, tgContext);
+        var chatId = telegramProperties.getChatId(tgContext.getChatType());
+
+        if (Objects.nonNull(epub.data()) && epub.data().length > 0) {
+            log.info("Publishing new chapter for book: {}, mode={}", tgContext.getBook().getRuName(), tgContext.getChatType());
+            var response = telegramService.publishNewChapter(chatId, tgContext.getBook().getRuName(),
+                    tgContext.getTgBookId(),
+                    tgContext.getChapters(),
+                    tgContext.getStatus(),
+                    epub.fileName(),
+                    epub.data());
+            context.set(TELEGRAM_CHAPTER_ID, response.messageId());
 
+            context.getRelease().addMetadata(TELEGRAM_CHAPTER_ID, response.messageId());
+            checkpoints.saveProgress(context.getRelease(), TELEGRAM_CHAPTER_ID);
+        } else {
+            log.error("Epub generation failed for book: {}, mode={}", tgContext.getBook().getRuName(), tgContext.getChatType());
+            throw new AppException("Epub generation is failed");
+        }
+    }
+
+    /**
+     * Renders the cover and converts chapters to EPUB, both are checkpointed.
+     */
+    private Epub buildEpub(ActionContext context, TGContext tgContext) {
         log.debug("Fetching ready chapters for: bookID={}, mode={}", tgContext.getRemoteBookId(), tgContext.getChatType());
 
         var chapterList = getChapters(context, tgContext.getChaptersRequest().first(), tgContext.getChaptersRequest().second());
@@ -147,15 +212,15 @@ public class TelegramHandler implements ActionHandler {
         log.debug("Generating cover image for book: {}, mode={}", tgContext.getBook().getRuName(), tgContext.getChatType());
 
         var coverInfo = new CoverInfo(number, tgContext.getBook().getRuName(), "M T.\nNOVELS", telegramProperties.getChannelLink(), "@mt_novel", "Subscribe");
-        var coverImage = coverService.generateBookCover(image, coverInfo);
+        var coverImage = coverService.generateBookCover(image, coverInfo).getData();
         var fileName = NameUtil.toFileSnakeCase(tgContext.getBook().getEnName()) + "_%s.epub".formatted(partIndex);
         var chatId = telegramProperties.getChatId(tgContext.getChatType());
 
         log.debug("Converting to EPUB for book: {}, mode={}", tgContext.getBook().getRuName(), tgContext.getChatType());
-        var epubBytes = pandocRestClient.convertToEpubCached(PandocRequest.createNew(b -> b
+        var pandocRequest = PandocRequest.createNew(b -> b
                 .startIndex(tgContext.getChaptersRequest().first())
                 .markdownFiles(markdowns)
-                .coverImage(coverImage.getData())
+                .coverImage(coverImage)
                 .coverContentType(image.getContentType())
                 .title(tgContext.getBook().getRuName())
                 .subtitle("Часть %s".formatted(partIndex))
@@ -175,27 +240,60 @@ public class TelegramHandler implements ActionHandler {
                     telegramProperties.getChannelLink()
                 ))
                 .outputFilename(fileName)
-        ));
+        );
+        var epubBytes = checkpoints.resolve(context.getRelease(), "epub", pandocRequest.contentHash(), EPUB_CONTENT_TYPE,
+                () -> pandocRestClient.convertToEpubCached(pandocRequest));
 
-        if (Objects.nonNull(epubBytes) && epubBytes.length > 0) {
+        return new Epub(fileName, epubBytes);
+    }
+
+    @SneakyThrows
+    private void releaseAudio(ActionContext context) {
+        if (isPublished(context, TELEGRAM_CHAPTER_ID)) {
+            return;
+        }
+
+        var tgContext = resolveTgContext(context);
+        var audio = audioRelease(context, tgContext);
+        var chatId = telegramProperties.getChatId(tgContext.getChatType());
+
+        try (var archive = openAudioArchive(tgContext.getRemoteBookId(), audio.from(), audio.to(), audio.cover());
+             var audioFiles = startAudioPipeline(context, audio, archive)) {
             log.info("Publishing new chapter for book: {}, mode={}", tgContext.getBook().getRuName(), tgContext.getChatType());
-            var response = telegramService.publishNewChapter(chatId, tgContext.getBook().getRuName(),
+
+            // Files are uploaded as soon as they are joined or enhanced
+            var response = telegramService.publishNewAudio(chatId, tgContext.getBook().getRuName(),
                     tgContext.getTgBookId(),
                     tgContext.getChapters(),
                     tgContext.getStatus(),
-                    fileName,
-                    epubBytes);
+                    audioFiles,
+                    audioFiles.expectedSizes(),
+                    coverArt.content());
             context.set(TELEGRAM_CHAPTER_ID, response.messageId());
 
             context.getRelease().addMetadata(TELEGRAM_CHAPTER_ID, response.messageId());
-        } else {
-            log.error("Epub generation failed for book: {}, mode={}", tgContext.getBook().getRuName(), tgContext.getChatType());
-            throw new AppException("Epub generation is failed");
+            checkpoints.saveProgress(context.getRelease(), TELEGRAM_CHAPTER_ID);
         }
+
+        bookRestClient.removeAudioFile(tgContext.getRemoteBookId(), audio.from(), audio.to());
     }
 
-    private void releaseAudio(ActionContext context) {
+    /**
+     * Joins and enhances audio files without publishing, files are checkpointed. The downloaded archive is kept,
+     * so the release doesn't download it again.
+     */
+    @SneakyThrows
+    private void prepareAudio(ActionContext context) {
         var tgContext = resolveTgContext(context);
+        var audio = audioRelease(context, tgContext);
+
+        try (var archive = openAudioArchive(tgContext.getRemoteBookId(), audio.from(), audio.to(), audio.cover());
+             var audioFiles = startAudioPipeline(context, audio, archive)) {
+            audioFiles.forEachRemaining(file -> log.debug("Prepared audio file: {}", file));
+        }
+    }
+
+    private AudioRelease audioRelease(ActionContext context, TGContext tgContext) {
         var partIndex = context.getReleasePosition();
         var image = imageRepository.getById(tgContext.getBook().getImageId());
         var number = partIndex + "";
@@ -206,16 +304,13 @@ public class TelegramHandler implements ActionHandler {
                 telegramProperties.getChannelLink(),
                 "@mt_novel",
                 "Subscribe");
-        var coverImage = coverService.generateBookCover(image, coverInfo);
+        var coverImage = coverService.generateBookCover(image, coverInfo).getData();
 
         log.debug("Fetching ready chapters for: bookID={}, mode={}", tgContext.getRemoteBookId(), tgContext.getChatType());
 
         var from = tgContext.getChaptersRequest().first();
         var fileName = NameUtil.toFileSnakeCase(tgContext.getBook().getEnName()) + "_%s.mp3".formatted(partIndex);
         var to = tgContext.getChaptersRequest().second();
-        var zipBytes = bookRestClient.getAudioCached(tgContext.getRemoteBookId(), from, to, coverImage.getData());
-        var audioFiles = processZipFile(zipBytes);
-
         var chatId = telegramProperties.getChatId(tgContext.getChatType());
         var metadata = Metadata.createNew(b -> b
                 .title(tgContext.getBook().getRuName())
@@ -230,29 +325,42 @@ public class TelegramHandler implements ActionHandler {
                 .copyright(textInfo.getEpub().getRights())
                 .comments(textInfo.getTts().getDisclaimer())
         );
-        var firstAudioFile = telegramAudio.putTogether(fileName, metadata, Boolean.TRUE, audioFiles.first(), coverImage.getData());
-        var restAudioFiles = telegramAudio.enhance(fileName, metadata, audioFiles.rest(), coverImage.getData());
-        var filesToRelease = new ArrayList<FileMetadata>();
-        filesToRelease.add(firstAudioFile);
-        filesToRelease.addAll(restAudioFiles);
 
+        return new AudioRelease(fileName, metadata, coverImage, from, to);
+    }
 
-        if (Objects.nonNull(firstAudioFile)) {
-            log.info("Publishing new chapter for book: {}, mode={}", tgContext.getBook().getRuName(), tgContext.getChatType());
+    /**
+     * The first file is joined and the rest are enhanced concurrently, while ready files are already uploaded.
+     */
+    private AudioPipeline.Run startAudioPipeline(ActionContext context, AudioRelease audio, ZipArchive archive) {
+        var audioFiles = processZipFile(archive);
+        return audioPipeline.start(audio.fileName(), audio.metadata(), audioFiles.first(), audioFiles.rest(),
+                audio.cover(), new AudioCheckpoints(context.getRelease(), audio.fileName(), audio.metadata()));
+    }
 
-        var response = telegramService.publishNewAudio(chatId, tgContext.getBook().getRuName(),
-                    tgContext.getTgBookId(),
-                    tgContext.getChapters(),
-                    tgContext.getStatus(),
-                    filesToRelease,
-                    coverArt.content());
-            context.set(TELEGRAM_CHAPTER_ID, response.messageId());
+    /**
+     * @return whether the message is published by a previous attempt of the release
+     */
+    private boolean isPublished(ActionContext context, String key) {
+        if (context.getRelease().metadata(key) instanceof Number messageId) {
+            log.info("Message is already published, skipping: releaseId={}, {}={}", context.getRelease().getId(),
+                    key, messageId);
+            context.set(key, messageId.intValue());
+            return true;
+        }
 
-            context.getRelease().addMetadata(TELEGRAM_CHAPTER_ID, response.messageId());
-        } else {
-            log.error("Mp3 generation failed for book: {}, mode={}", tgContext.getBook().getRuName(), tgContext.getChatType());
-            throw new AppException("Mp3 generation is failed");
+        return false;
+    }
+
+    /**
+     * Audio is spooled to a file when it's enabled, so entries are inflated one by one on demand.
+     */
+    private ZipArchive openAudioArchive(String remoteBookId, Integer from, Integer to, byte[] coverArt) {
+        if (bookRestClient.isAudioSpoolEnabled()) {
+            return openZipFile(bookRestClient.getAudioFile(remoteBookId, from, to, coverArt));
         }
+
+        return readZipArchive(bookRestClient.getAudioCached(remoteBookId, from, to, coverArt));
     }
 
     private TGContext resolveTgContext(ActionContext context) {
@@ -282,22 +390,15 @@ public class TelegramHandler implements ActionHandler {
                 .build();
     }
 
-    public AudioFiles processZipFile(byte[] zipData) {
-        Map<String, byte[]> files = readZipFile(zipData);
-        List<Map.Entry<String, byte[]>> sortedEntries = new ArrayList<>(files.entrySet());
-        sortedEntries.sort(Map.Entry.comparingByKey());
+    public AudioFiles processZipFile(ZipArchive archive) {
+        var sortedEntries = new ArrayList<>(archive.entries());
+        sortedEntries.sort(Comparator.comparing(LazyEntry::name));
 
-        byte[] first = null;
-        List<byte[]> rest = new ArrayList<>();
-        for (int i = 0; i < sortedEntries.size(); i++) {
-            if (i == 0) {
-                first = sortedEntries.get(i).getValue();
-            } else {
-                rest.add(sortedEntries.get(i).getValue());
-            }
+        if (sortedEntries.isEmpty()) {
+            throw new AppException("Audio archive is empty");
         }
 
-        return new AudioFiles(first, rest);
+        return new AudioFiles(sortedEntries.getFirst(), List.copyOf(sortedEntries.subList(1, sortedEntries.size())));
     }
 
     private List<Chapter> getChapters(ActionContext context, int from, int to) {
@@ -314,7 +415,69 @@ public class TelegramHandler implements ActionHandler {
         }
     }
 
-    public record AudioFiles(byte[] first, List<byte[]> rest) {}
+    /**
+     * Entries are read on demand, while their archive is open.
+     */
+    public record AudioFiles(LazyEntry first, List<LazyEntry> rest) {}
+
+    private record Epub(String fileName, byte[] data) {}
+
+    private record AudioRelease(String fileName, Metadata metadata, byte[] cover, Integer from, Integer to) {}
+
+    /**
+     * Checkpoints of joined and enhanced audio files, a file is identified by its number and the hash of its source.
+     */
+    @RequiredArgsConstructor
+    private class AudioCheckpoints implements AudioPipeline.Store {
+
+        private static final String FILENAME = "filename";
+        private static final String DURATION = "duration";
+
+        private final Release release;
+        private final String fileName;
+        private final Metadata metadata;
+        private final Map<Integer, String> hashes = new ConcurrentHashMap<>();
+
+        @Override
+        public Optional<FileMetadata> find(int number, LazyEntry source) {
+            return checkpoints.find(release, stage(number), hash(number, source))
+                    .map(artifact -> FileMetadata.builder()
+                            .filename(artifact.attributes().get(FILENAME))
+                            .durationSeconds(Double.parseDouble(artifact.attributes().getOrDefault(DURATION, "0")))
+                            .metadata(metadata)
+                            .mp3Data(artifact.data())
+                            .build());
+        }
+
+        @Override
+        public void save(int number, LazyEntry source, FileMetadata file) {
+            var attributes = Map.of(
+                    FILENAME, Objects.requireNonNullElse(file.getFilename(), ""),
+                    DURATION, String.valueOf(file.getDurationSeconds()));
+            checkpoints.save(release, stage(number), hash(number, source), MPEG_CONTENT_TYPE,
+                    new Artifact(file.getMp3Data(), attributes));
+        }
+
+        private String stage(int number) {
+            return "audio-%04d".formatted(number);
+        }
+
+        private String hash(int number, LazyEntry source) {
+            return hashes.computeIfAbsent(number, unused ->
+                    sha256("%s#%s#%s".formatted(fileName, Objects.hashCode(metadata), contentHash(source))));
+        }
+
+        /**
+         * The source is streamed through the digest, so it isn't loaded into the heap.
+         */
+        @SneakyThrows
+        private String contentHash(LazyEntry source) {
+            try (var stream = source.open()) {
+                return sha256(stream);
+            }
+        }
+
+    }
 
     /* ============= */
 
@@ -12,6 +12,7 @@ import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -147,36 +148,48 @@ public class TelegramService {
     public Response publishNewAudio(String chatId, String name, Integer synopsisMessageId,
                                     String chapters, String status, List<FileMetadata> audioFiles,
                                     byte[] thumbnail) {
-        log.info("Prepare to start a telegram session: {}", LocalDateTime.now());
+        var messageCaption = audioCaption(chatId, name, synopsisMessageId, chapters, status);
+        var chaps = chapters.split("-");
+        var counter = new AtomicInteger(Integer.parseInt(chaps[0]));
 
-        String template = loadTemplate("telegram-audio-update.md");
+        var audioRecords = audioFiles.stream()
+                .map(metadata -> toAudioRecord(metadata, counter))
+                .collect(Collectors.toList());
 
-        Map<String, String> values = new HashMap<>();
-        values.put("channelName", telegramProperties.getChannelName());
-        values.put("name", name);
-        values.put("synopsisMessageId", synopsisMessageId.toString());
-        values.put("chapters", chapters);
-        values.put("format", "Аудио");
-        values.put("status", status);
+        return client.sendAudioFilesWithMessage(chatId, messageCaption, MPEG_CONTENT_TYPE,
+                telegramProperties.getChannelName(), audioRecords, thumbnail);
+    }
 
-        String message = engine.apply(values, template);
+    /**
+     * Same as {@link #publishNewAudio(String, String, Integer, String, String, List, byte[])}, but files are
+     * uploaded while the next ones are still being produced.
+     *
+     * @param expectedSizes expected sizes of files in bytes, used to split files into messages in advance
+     */
+    @SneakyThrows
+    public Response publishNewAudio(String chatId, String name, Integer synopsisMessageId,
+                                    String chapters, String status, Iterator<FileMetadata> audioFiles,
+                                    List<Long> expectedSizes, byte[] thumbnail) {
+        var messageCaption = audioCaption(chatId, name, synopsisMessageId, chapters, status);
+        var chaps = chapters.split("-");
+        var counter = new AtomicInteger(Integer.parseInt(chaps[0]));
 
-        var messageCaption = Caption.builder()
-                .text(message)
-                .parseMode(ParseMode.MarkdownV2)
-                .build();
+        var audioRecords = new Iterator<AudioRecord>() {
 
-        log.info("Created message: chatId={}, message={}", chatId, message);
+            @Override
+            public boolean hasNext() {
+                return audioFiles.hasNext();
+            }
 
-        var chaps = chapters.split("-");
-        var counter = new AtomicInteger(Integer.parseInt(chaps[0]));
+            @Override
+            public AudioRecord next() {
+                return toAudioRecord(audioFiles.next(), counter);
+            }
 
-        var audioRecords = audioFiles.stream()
-                .map(metadata -> new AudioRecord(metadata.getFilename(), "Chapter: %s".formatted(counter.getAndIncrement()), metadata.getMp3Data(), (int) metadata.getDurationSeconds()))
-                .collect(Collectors.toList());
+        };
 
         return client.sendAudioFilesWithMessage(chatId, messageCaption, MPEG_CONTENT_TYPE,
-                telegramProperties.getChannelName(), audioRecords, thumbnail);
+                telegramProperties.getChannelName(), audioRecords, expectedSizes, thumbnail);
     }
 
     @SneakyThrows
@@ -255,6 +268,35 @@ public class TelegramService {
         return copy;
     }
 
+    @SneakyThrows
+    private Caption audioCaption(String chatId, String name, Integer synopsisMessageId, String chapters, String status) {
+        log.info("Prepare to start a telegram session: {}", LocalDateTime.now());
+
+        String template = loadTemplate("telegram-audio-update.md");
+
+        Map<String, String> values = new HashMap<>();
+        values.put("channelName", telegramProperties.getChannelName());
+        values.put("name", name);
+        values.put("synopsisMessageId", synopsisMessageId.toString());
+        values.put("chapters", chapters);
+        values.put("format", "Аудио");
+        values.put("status", status);
+
+        String message = engine.apply(values, template);
+
+        log.info("Created message: chatId={}, message={}", chatId, message);
+
+        return Caption.builder()
+                .text(message)
+                .parseMode(ParseMode.MarkdownV2)
+                .build();
+    }
+
+    private AudioRecord toAudioRecord(FileMetadata metadata, AtomicInteger counter) {
+        return new AudioRecord(metadata.getFilename(), "Chapter: %s".formatted(counter.getAndIncrement()),
+                metadata.getMp3Data(), (int) metadata.getDurationSeconds());
+    }
+
     private int getContentLength(Book book) {
         int length = 0;
 
@@ -3,17 +3,12 @@ package machinum.telegram;
 import lombok.AccessLevel;
 import lombok.NoArgsConstructor;
 import lombok.SneakyThrows;
+import machinum.image.ImageUtil;
 
 import javax.imageio.ImageIO;
-import javax.imageio.ImageWriteParam;
-import javax.imageio.ImageWriter;
-import javax.imageio.stream.ImageOutputStream;
-import java.awt.*;
 import java.awt.image.BufferedImage;
 import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.util.Iterator;
 
 @NoArgsConstructor(access = AccessLevel.PRIVATE)
 public class TelegramThumbnailer {
@@ -25,68 +20,18 @@ public class TelegramThumbnailer {
             throw new IOException("Invalid image format");
         }
 
-        BufferedImage resizedImage = resizeImage(originalImage, 320, 320);
+        BufferedImage resizedImage = ImageUtil.resize(originalImage, 320, 320);
 
-        byte[] result = compressToJpeg(resizedImage);
+        byte[] result = ImageUtil.encode(resizedImage, "jpeg", 0.85f);
 
         // If still over 200KB, reduce quality
         float quality = 0.9f;
         while (result.length > 200 * 1024 && quality > 0.1f) {
-            result = compressToJpeg(resizedImage, quality);
+            result = ImageUtil.encode(resizedImage, "jpeg", quality);
             quality -= 0.1f;
         }
 
         return result;
     }
 
-    private static BufferedImage resizeImage(BufferedImage original, int maxWidth, int maxHeight) {
-        int originalWidth = original.getWidth();
-        int originalHeight = original.getHeight();
-
-        if (originalWidth <= maxWidth && originalHeight <= maxHeight) {
-            return original;
-        }
-
-        double scaleX = (double) maxWidth / originalWidth;
-        double scaleY = (double) maxHeight / originalHeight;
-        double scale = Math.min(scaleX, scaleY);
-
-        int newWidth = (int) (originalWidth * scale);
-        int newHeight = (int) (originalHeight * scale);
-
-        BufferedImage resized = new BufferedImage(newWidth, newHeight, BufferedImage.TYPE_INT_RGB);
-        Graphics2D g2d = resized.createGraphics();
-        g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
-        g2d.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
-        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-        g2d.drawImage(original, 0, 0, newWidth, newHeight, null);
-        g2d.dispose();
-
-        return resized;
-    }
-
-    private static byte[] compressToJpeg(BufferedImage image) throws IOException {
-        return compressToJpeg(image, 0.85f);
-    }
-
-    private static byte[] compressToJpeg(BufferedImage image, float quality) throws IOException {
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-
-        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName("jpeg");
-        ImageWriter writer = writers.next();
-
-        ImageWriteParam param = writer.getDefaultWriteParam();
-        param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
-        param.setCompressionQuality(quality);
-
-        ImageOutputStream ios = ImageIO.createImageOutputStream(baos);
-        writer.setOutput(ios);
-        writer.write(null, new javax.imageio.IIOImage(image, null, null), param);
-
-        ios.close();
-        writer.dispose();
-
-        return baos.toByteArray();
-    }
-
 }
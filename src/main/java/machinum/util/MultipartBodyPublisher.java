@@ -0,0 +1,117 @@
+package machinum.util;
+
+import lombok.SneakyThrows;
+
+import java.io.InputStream;
+import java.net.http.HttpRequest;
+import java.net.http.HttpRequest.BodyPublisher;
+import java.net.http.HttpRequest.BodyPublishers;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+/**
+ * Builds a {@code multipart/form-data} body for {@link java.net.http.HttpClient}.
+ * <p>
+ * Parts aren't copied into a combined buffer: every part is a separate publisher, byte arrays are sent as is,
+ * files and streams are read lazily while the request is being sent.
+ * <pre>{@code
+ * var body = new MultipartBodyPublisher()
+ *         .textPart("title", title)
+ *         .filePart("cover_image", "cover.png", "image/png", cover);
+ * HttpRequest.newBuilder()
+ *         .header("Content-Type", body.contentType())
+ *         .POST(body.build());
+ * }</pre>
+ */
+public class MultipartBodyPublisher {
+
+    private final String boundary;
+
+    private final List<BodyPublisher> parts = new ArrayList<>();
+
+    public MultipartBodyPublisher() {
+        this("----MultipartBoundary" + UUID.randomUUID().toString().replace("-", ""));
+    }
+
+    public MultipartBodyPublisher(String boundary) {
+        this.boundary = boundary;
+    }
+
+    public String boundary() {
+        return boundary;
+    }
+
+    /**
+     * @return value for the {@code Content-Type} header of the request
+     */
+    public String contentType() {
+        return "multipart/form-data; boundary=" + boundary;
+    }
+
+    public MultipartBodyPublisher textPart(String name, String value) {
+        return textPart(name, value, null);
+    }
+
+    /**
+     * @param contentType content type of the part, e.g. {@code text/plain; charset=UTF-8}, can be {@code null}
+     */
+    public MultipartBodyPublisher textPart(String name, String value, String contentType) {
+        addHeader("Content-Disposition: form-data; name=\"%s\"\r\n".formatted(name), contentType);
+        parts.add(BodyPublishers.ofString(value + "\r\n", StandardCharsets.UTF_8));
+
+        return this;
+    }
+
+    public MultipartBodyPublisher filePart(String name, String filename, String contentType, byte[] content) {
+        return filePart(name, filename, contentType, BodyPublishers.ofByteArray(content));
+    }
+
+    @SneakyThrows
+    public MultipartBodyPublisher filePart(String name, String filename, String contentType, Path file) {
+        return filePart(name, filename, contentType, BodyPublishers.ofFile(file));
+    }
+
+    /**
+     * @param stream opens the content, is called every time the body is sent, e.g. on retry
+     */
+    public MultipartBodyPublisher filePart(String name, String filename, String contentType, Supplier<InputStream> stream) {
+        return filePart(name, filename, contentType, BodyPublishers.ofInputStream(stream));
+    }
+
+    /**
+     * @return body with all added parts and the closing boundary
+     */
+    public HttpRequest.BodyPublisher build() {
+        var publishers = new ArrayList<>(parts);
+        publishers.add(BodyPublishers.ofString("--" + boundary + "--\r\n", StandardCharsets.UTF_8));
+
+        return BodyPublishers.concat(publishers.toArray(BodyPublisher[]::new));
+    }
+
+    /* ============= */
+
+    private MultipartBodyPublisher filePart(String name, String filename, String contentType, BodyPublisher content) {
+        addHeader("Content-Disposition: form-data; name=\"%s\"; filename=\"%s\"\r\n".formatted(name, filename), contentType);
+        parts.add(content);
+        parts.add(BodyPublishers.ofString("\r\n"));
+
+        return this;
+    }
+
+    private void addHeader(String disposition, String contentType) {
+        var header = new StringBuilder("--").append(boundary).append("\r\n")
+                .append(disposition);
+        if (Objects.nonNull(contentType)) {
+            header.append("Content-Type: ").append(contentType).append("\r\n");
+        }
+        header.append("\r\n");
+
+        parts.add(BodyPublishers.ofString(header.toString(), StandardCharsets.UTF_8));
+    }
+
+}
@@ -8,8 +8,10 @@ import lombok.extern.slf4j.Slf4j;
 import machinum.exception.AppException;
 
 import javax.xml.bind.DatatypeConverter;
+import java.io.InputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
@@ -212,4 +214,35 @@ public class Util {
         return DatatypeConverter.printHexBinary(digest).toUpperCase();
     }
 
+    @SneakyThrows
+    public static String sha256(String text) {
+        MessageDigest md = MessageDigest.getInstance("SHA-256");
+        md.update(text.getBytes(StandardCharsets.UTF_8));
+        byte[] digest = md.digest();
+        return DatatypeConverter.printHexBinary(digest).toLowerCase();
+    }
+
+    /**
+     * @param stream content to hash, it's read in chunks and isn't closed
+     */
+    @SneakyThrows
+    public static String sha256(InputStream stream) {
+        MessageDigest md = MessageDigest.getInstance("SHA-256");
+        byte[] buffer = new byte[64 * 1024];
+        int read;
+        while ((read = stream.read(buffer)) != -1) {
+            md.update(buffer, 0, read);
+        }
+        byte[] digest = md.digest();
+        return DatatypeConverter.printHexBinary(digest).toLowerCase();
+    }
+
+    @SneakyThrows
+    public static String sha256(byte[] data) {
+        MessageDigest md = MessageDigest.getInstance("SHA-256");
+        md.update(data);
+        byte[] digest = md.digest();
+        return DatatypeConverter.printHexBinary(digest).toLowerCase();
+    }
+
 }
@@ -6,10 +6,18 @@ import lombok.SneakyThrows;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 import java.util.zip.ZipInputStream;
 import java.util.zip.ZipOutputStream;
 
@@ -32,6 +40,74 @@ public class ZipUtil {
         return files;
     }
 
+    /**
+     * Wraps already read zip content into archive, see {@link #openZipFile(Path)}.
+     */
+    public static ZipArchive readZipArchive(byte[] zipData) {
+        var entries = new ArrayList<LazyEntry>();
+        readZipFile(zipData).forEach((name, content) -> entries.add(new LazyEntry() {
+
+            @Override
+            public String name() {
+                return name;
+            }
+
+            @Override
+            public long size() {
+                return content.length;
+            }
+
+            @Override
+            public InputStream open() {
+                return new ByteArrayInputStream(content);
+            }
+
+            @Override
+            public byte[] readAllBytes() {
+                return content;
+            }
+
+        }));
+
+        return new ZipArchive(Collections.unmodifiableList(entries), () -> {});
+    }
+
+    /**
+     * Opens zip file without reading its content, an entry is inflated only when it's opened.
+     * The archive must be closed after use.
+     */
+    @SneakyThrows
+    public static ZipArchive openZipFile(Path file) {
+        var zipFile = new ZipFile(file.toFile());
+        var entries = zipFile.stream()
+                .filter(entry -> !entry.isDirectory())
+                .<LazyEntry>map(entry -> new LazyEntry() {
+
+                    @Override
+                    public String name() {
+                        return entry.getName();
+                    }
+
+                    @Override
+                    public long size() {
+                        return entry.getSize();
+                    }
+
+                    @Override
+                    public InputStream open() {
+                        try {
+                            return zipFile.getInputStream(entry);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    }
+
+                })
+                .toList();
+
+        return new ZipArchive(entries, zipFile);
+    }
+
     /**
      * Creates a zip file containing multiple MP3 files.
      *
@@ -53,4 +129,36 @@ public class ZipUtil {
         return baos.toByteArray();
     }
 
+    /**
+     * Entry of a zip archive, the content is read on demand.
+     */
+    public interface LazyEntry {
+
+        String name();
+
+        /**
+         * @return uncompressed size, or -1 if it's unknown
+         */
+        long size();
+
+        InputStream open();
+
+        @SneakyThrows
+        default byte[] readAllBytes() {
+            try (var stream = open()) {
+                return stream.readAllBytes();
+            }
+        }
+
+    }
+
+    public record ZipArchive(List<LazyEntry> entries, Closeable resource) implements AutoCloseable {
+
+        @Override
+        public void close() throws IOException {
+            resource.close();
+        }
+
+    }
+
 }
@@ -0,0 +1,6 @@
+-- Content of images is kept in an object storage, the table keeps only the key of the content
+ALTER TABLE images ADD COLUMN storage_key VARCHAR(255);
+ALTER TABLE images ADD COLUMN size BIGINT;
+ALTER TABLE images ALTER COLUMN data DROP NOT NULL;
+
+UPDATE images SET size = length(data) WHERE data IS NOT NULL;
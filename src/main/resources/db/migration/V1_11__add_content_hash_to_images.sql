@@ -0,0 +1,4 @@
+-- Hash of the content is the ETag of an image, images which are already moved to the storage get it on startup
+ALTER TABLE images ADD COLUMN content_hash VARCHAR(64);
+
+UPDATE images SET content_hash = encode(sha256(data), 'hex') WHERE data IS NOT NULL;
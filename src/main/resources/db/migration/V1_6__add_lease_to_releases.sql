@@ -0,0 +1,4 @@
+ALTER TABLE releases ADD COLUMN lease_owner VARCHAR(255);
+ALTER TABLE releases ADD COLUMN lease_expires_at TIMESTAMP;
+
+CREATE INDEX releases_lease_expires_at_idx ON releases (lease_expires_at) WHERE lease_expires_at IS NOT NULL;
@@ -0,0 +1,20 @@
+-- Position of a release within its target: index in order of dates and 0 - first, 1 - usual, 2 - last
+ALTER TABLE releases ADD COLUMN position_index INTEGER;
+ALTER TABLE releases ADD COLUMN position_flag SMALLINT;
+
+UPDATE releases r0
+SET position_index = p0.row_num,
+    position_flag = CASE WHEN p0.row_num = 1 THEN 0 WHEN p0.row_num = p0.total THEN 2 ELSE 1 END
+FROM (
+    SELECT
+        r1.id,
+        row_number() OVER (PARTITION BY r1.release_target_id ORDER BY r1.date ASC) AS row_num,
+        COUNT(*) OVER (PARTITION BY r1.release_target_id) AS total
+    FROM releases r1
+) p0
+WHERE r0.id = p0.id;
+
+-- Metadata is queried by keys
+ALTER TABLE releases ALTER COLUMN metadata TYPE JSONB USING metadata::JSONB;
+
+CREATE INDEX releases_metadata_idx ON releases USING GIN (metadata);
@@ -0,0 +1,121 @@
+/* Summary of releases per release target, maintained by triggers, so book_releases doesn't aggregate all releases */
+
+CREATE TABLE IF NOT EXISTS release_target_stats (
+    release_target_id VARCHAR(36) PRIMARY KEY REFERENCES release_targets(id) ON DELETE CASCADE,
+    releases_count BIGINT NOT NULL,
+    chapters_count BIGINT NOT NULL,
+    min_date DATE,
+    max_date DATE,
+    -- date of the first release which isn't executed yet
+    next_release DATE,
+    updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE INDEX IF NOT EXISTS release_targets_book_id_idx ON release_targets (book_id);
+
+/* Summary of a target is recomputed under a transaction lock of the target, otherwise concurrent
+   transactions read each other's releases before commit and the last one to upsert leaves a stale summary.
+   Locks are taken in order of ids, so transactions changing several targets don't deadlock. */
+CREATE OR REPLACE FUNCTION refresh_release_target_stats(target_ids VARCHAR[])
+ RETURNS VOID AS $$
+ BEGIN
+     PERFORM pg_advisory_xact_lock(hashtextextended('release_target_stats:' || t0.id, 0))
+     FROM (SELECT DISTINCT id FROM unnest(target_ids) AS u0(id) WHERE id IS NOT NULL ORDER BY id) t0;
+
+     -- A new statement takes a new snapshot, so releases committed while waiting for the lock are counted
+     INSERT INTO release_target_stats (release_target_id, releases_count, chapters_count, min_date, max_date, next_release, updated_at)
+     SELECT rt0.id,
+         COUNT(r0.id),
+         COALESCE(SUM(r0.chapters), 0),
+         MIN(r0.date),
+         MAX(r0.date),
+         MIN(r0.date) FILTER (WHERE r0.status <> 'EXECUTED'),
+         CURRENT_TIMESTAMP
+     FROM release_targets rt0
+         LEFT JOIN releases r0 ON r0.release_target_id = rt0.id
+     WHERE rt0.id = ANY(target_ids)
+     GROUP BY rt0.id
+     ON CONFLICT (release_target_id) DO UPDATE SET
+         releases_count = EXCLUDED.releases_count,
+         chapters_count = EXCLUDED.chapters_count,
+         min_date = EXCLUDED.min_date,
+         max_date = EXCLUDED.max_date,
+         next_release = EXCLUDED.next_release,
+         updated_at = EXCLUDED.updated_at;
+ END;
+ $$ LANGUAGE plpgsql;
+
+-- Inserts and deletes are handled once per statement, e.g. a whole schedule is created by one batch
+CREATE OR REPLACE FUNCTION release_target_stats_on_insert()
+ RETURNS TRIGGER AS $$
+ BEGIN
+     PERFORM refresh_release_target_stats(ARRAY(SELECT DISTINCT release_target_id FROM new_releases));
+     RETURN NULL;
+ END;
+ $$ LANGUAGE plpgsql;
+
+CREATE OR REPLACE FUNCTION release_target_stats_on_delete()
+ RETURNS TRIGGER AS $$
+ BEGIN
+     PERFORM refresh_release_target_stats(ARRAY(SELECT DISTINCT release_target_id FROM old_releases));
+     RETURN NULL;
+ END;
+ $$ LANGUAGE plpgsql;
+
+-- Only changes of summarized columns are handled, e.g. renewal of a lease doesn't touch the summary
+CREATE OR REPLACE FUNCTION release_target_stats_on_update()
+ RETURNS TRIGGER AS $$
+ BEGIN
+     IF OLD.release_target_id IS DISTINCT FROM NEW.release_target_id THEN
+         PERFORM refresh_release_target_stats(ARRAY[OLD.release_target_id, NEW.release_target_id]);
+     ELSE
+         PERFORM refresh_release_target_stats(ARRAY[NEW.release_target_id]);
+     END IF;
+     RETURN NULL;
+ END;
+ $$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS trigger_release_target_stats_insert ON releases;
+CREATE TRIGGER trigger_release_target_stats_insert
+ AFTER INSERT ON releases
+ REFERENCING NEW TABLE AS new_releases
+ FOR EACH STATEMENT
+ EXECUTE FUNCTION release_target_stats_on_insert();
+
+DROP TRIGGER IF EXISTS trigger_release_target_stats_delete ON releases;
+CREATE TRIGGER trigger_release_target_stats_delete
+ AFTER DELETE ON releases
+ REFERENCING OLD TABLE AS old_releases
+ FOR EACH STATEMENT
+ EXECUTE FUNCTION release_target_stats_on_delete();
+
+DROP TRIGGER IF EXISTS trigger_release_target_stats_update ON releases;
+CREATE TRIGGER trigger_release_target_stats_update
+ AFTER UPDATE OF release_target_id, date, chapters, status ON releases
+ FOR EACH ROW
+ WHEN (OLD.release_target_id IS DISTINCT FROM NEW.release_target_id
+     OR OLD.date IS DISTINCT FROM NEW.date
+     OR OLD.chapters IS DISTINCT FROM NEW.chapters
+     OR OLD.status IS DISTINCT FROM NEW.status)
+ EXECUTE FUNCTION release_target_stats_on_update();
+
+SELECT refresh_release_target_stats(ARRAY(SELECT id FROM release_targets));
+
+-- Targets without releases to execute aren't listed, same as before
+DROP VIEW IF EXISTS book_releases;
+CREATE OR REPLACE VIEW book_releases AS
+ SELECT rt0.id,
+    rt0.book_id,
+    rt0.name,
+    rt0.action_type,
+    rt0.enabled,
+    rt0.metadata,
+    rt0.created_at,
+    s0.chapters_count,
+    s0.releases_count,
+    s0.max_date - s0.min_date AS releases_days,
+    s0.next_release
+   FROM release_targets rt0
+     JOIN release_target_stats s0 ON s0.release_target_id = rt0.id
+  WHERE s0.next_release IS NOT NULL
+  ORDER BY rt0.created_at, rt0.action_type;
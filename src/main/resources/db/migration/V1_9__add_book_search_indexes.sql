@@ -0,0 +1,11 @@
+-- Substring search by names (ILIKE '%query%') uses trigram indexes
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+CREATE INDEX IF NOT EXISTS books_ru_name_trgm_idx ON books USING GIN (ru_name gin_trgm_ops);
+CREATE INDEX IF NOT EXISTS books_en_name_trgm_idx ON books USING GIN (en_name gin_trgm_ops);
+
+-- Keyset pagination in order of creation
+UPDATE books SET created_at = CURRENT_TIMESTAMP WHERE created_at IS NULL;
+ALTER TABLE books ALTER COLUMN created_at SET NOT NULL;
+
+CREATE INDEX IF NOT EXISTS books_created_at_id_idx ON books (created_at, id);
@@ -82,7 +82,7 @@ export function editApp() {
         if(!isUpdate) {
             const rsp = await response.json();
             setTimeout(() => {
-              this.editBook(this.books.find(item => item.id === rsp.id));
+              this.fetchBook(rsp.id).then(book => this.editBook(book));
             }, 300);
         }
       } catch (error) {
@@ -21,9 +21,28 @@ export function listApp() {
     setSelectedItem(bookId) {
       this.changeValue('activeId', bookId);
       this.selectedBook = this.books.find(item => item.id === this.activePopupId);
+      // The list has only summaries of books, the drawer shows the full one
+      if (this.selectedBook) {
+        this.fetchBook(this.selectedBook.id).then(book => this.selectedBook = book || this.selectedBook);
+      }
       this.fetchSchedule(this.activeId);
     },
 
+    async fetchBook(bookId) {
+      try {
+        const response = await fetch(`/api/books/${bookId}`);
+        if (!response.ok) {
+          throw new Error('Failed to fetch book');
+        }
+
+        return await response.json();
+      } catch (error) {
+        console.error('Error fetching book:', error);
+        this.showToast('Failed to fetch book: ' + error.message, true);
+        return null;
+      }
+    },
+
     openDrawer() {
       this.setSelectedItem(this.activePopupId);
       this.drawerMode = 'view';
@@ -94,7 +113,7 @@ export function listApp() {
     },
 
     editActiveBook() {
-        this.editBook(this.books.find(item => item.id === this.activeId));
+        this.fetchBook(this.activeId).then(book => this.editBook(book));
     },
 
     deleteActiveBook() {
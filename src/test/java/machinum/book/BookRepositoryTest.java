@@ -0,0 +1,29 @@
+package machinum.book;
+
+import machinum.book.BookRepository.Cursor;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class BookRepositoryTest {
+
+    @Test
+    void testCursorRoundTrip() {
+        var cursor = new Cursor(LocalDateTime.of(2025, 3, 1, 12, 30, 15, 123_456_000), "a|b-1");
+
+        var value = cursor.format();
+
+        assertThat(value).doesNotContain("=", "+", "/");
+        assertThat(Cursor.parse(value)).isEqualTo(cursor);
+    }
+
+    @Test
+    void testMalformedCursor() {
+        assertThatThrownBy(() -> Cursor.parse("bm90LWEtY3Vyc29y"))
+                .isInstanceOf(RuntimeException.class);
+    }
+
+}
@@ -6,12 +6,16 @@ import com.github.tomakehurst.wiremock.junit5.WireMockExtension;
 import machinum.cache.CacheService;
 import machinum.chapter.Chapter;
 import machinum.chapter.ChapterJsonlConverter;
+import machinum.util.ZipUtil;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.RegisterExtension;
+import org.junit.jupiter.api.io.TempDir;
 
 import java.net.http.HttpClient;
+import java.nio.file.Path;
 import java.time.Duration;
+import java.util.Map;
 
 import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.options;
 import static org.assertj.core.api.Assertions.assertThat;
@@ -78,6 +82,33 @@ class BookRestClientTest {
                 );
     }
 
+    @Test
+    void testAudioSpool(@TempDir Path dir) throws Exception {
+        var zip = ZipUtil.createZipFile(Map.of("0001.mp3", new byte[]{1, 2}, "0002.mp3", new byte[]{3}));
+        wireMockExtension.stubFor(WireMock.post(WireMock.urlEqualTo("/api/books/api/books/someBookId/audio?from=1&to=5"))
+                .willReturn(WireMock.aResponse()
+                        .withHeader("Content-Type", "application/zip")
+                        .withBody(zip)));
+        var spoolClient = new BookRestClient(HttpClient.newBuilder().build(), converter, cacheService,
+                "http://localhost:" + wireMockExtension.getPort() + "/api/books", dir);
+
+        var file = spoolClient.getAudioFile("someBookId", 1, 5, new byte[0]);
+        // The downloaded archive is reused
+        assertThat(spoolClient.getAudioFile("someBookId", 1, 5, new byte[0]))
+                .isEqualTo(file);
+        wireMockExtension.verify(1, WireMock.postRequestedFor(WireMock.urlPathMatching(".*/audio")));
+
+        try (var archive = ZipUtil.openZipFile(file)) {
+            assertThat(archive.entries())
+                    .extracting(ZipUtil.LazyEntry::name)
+                    .containsExactlyInAnyOrder("0001.mp3", "0002.mp3");
+        }
+
+        spoolClient.removeAudioFile("someBookId", 1, 5);
+        assertThat(file)
+                .doesNotExist();
+    }
+
     @Test
     void testFail() throws Exception {
         // Example usage
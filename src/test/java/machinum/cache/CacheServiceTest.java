@@ -0,0 +1,147 @@
+package machinum.cache;
+
+import machinum.util.CheckedSupplier;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CacheServiceTest {
+
+    CacheService cache = new CacheService(Duration.ofMinutes(1), 100);
+
+    @AfterEach
+    void tearDown() throws Exception {
+        cache.close();
+    }
+
+    @Test
+    void testSingleFlight() throws Exception {
+        var loads = new AtomicInteger();
+        var started = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+
+        var first = CompletableFuture.supplyAsync(() -> cache.get("key", () -> {
+            loads.incrementAndGet();
+            started.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return "value";
+        }));
+        assertThat(started.await(5, TimeUnit.SECONDS))
+                .isTrue();
+
+        // Another key isn't blocked by the slow load
+        assertThat(cache.<String>get("other", () -> "other"))
+                .isEqualTo("other");
+
+        var second = CompletableFuture.supplyAsync(() -> cache.get("key", () -> {
+            loads.incrementAndGet();
+            return "duplicate";
+        }));
+        release.countDown();
+
+        assertThat(first.get(5, TimeUnit.SECONDS))
+                .isEqualTo("value");
+        assertThat(second.get(5, TimeUnit.SECONDS))
+                .isEqualTo("value");
+        assertThat(loads)
+                .hasValue(1);
+    }
+
+    @Test
+    void testEvictionByWeight() {
+        cache.get("first", () -> new byte[40]);
+        cache.get("second", () -> new byte[40]);
+        // Touch the first entry, so the second one is the least recently used
+        cache.get("first", () -> new byte[0]);
+        cache.get("third", () -> new byte[40]);
+
+        var stats = cache.stats();
+        assertThat(stats.size())
+                .isEqualTo(2);
+        assertThat(stats.weight())
+                .isEqualTo(80);
+        assertThat(stats.evictions())
+                .isEqualTo(1);
+        assertThat(stats.hits())
+                .isEqualTo(1);
+
+        var reloaded = new AtomicInteger();
+        cache.get("second", () -> {
+            reloaded.incrementAndGet();
+            return new byte[40];
+        });
+        assertThat(reloaded)
+                .hasValue(1);
+    }
+
+    @Test
+    void testDiskTierSurvivesRestart(@TempDir Path dir) throws Exception {
+        var loads = new AtomicInteger();
+        CheckedSupplier<byte[]> loader = () -> {
+            loads.incrementAndGet();
+            return new byte[]{1, 2, 3, 4};
+        };
+
+        try (var first = new CacheService(Duration.ofMinutes(1), 100, new DiskTier(dir, 4))) {
+            first.get("audio", loader);
+            assertThat(first.get("audio", loader))
+                    .containsExactly(1, 2, 3, 4);
+            assertThat(first.stats().weight())
+                    .isLessThan(100);
+        }
+
+        try (var second = new CacheService(Duration.ofMinutes(1), 100, new DiskTier(dir, 4))) {
+            assertThat(second.get("audio", loader))
+                    .containsExactly(1, 2, 3, 4);
+        }
+        assertThat(loads)
+                .hasValue(1);
+    }
+
+    @Test
+    void testFailedLoadIsNotCached() {
+        assertThatThrownBy(() -> cache.get("key", () -> {
+            throw new IllegalStateException("failed");
+        })).isInstanceOf(IllegalStateException.class);
+
+        assertThat(cache.<String>get("key", () -> "value"))
+                .isEqualTo("value");
+        assertThat(cache.stats().loadFailures())
+                .isEqualTo(1);
+    }
+
+    @Test
+    void testErrorDuringLoadDoesNotBlockKey() throws Exception {
+        assertThatThrownBy(() -> cache.get("key", () -> {
+            throw new OutOfMemoryError("failed");
+        })).isInstanceOf(OutOfMemoryError.class);
+
+        var next = CompletableFuture.supplyAsync(() -> cache.<String>get("key", () -> "value"));
+        assertThat(next.get(5, TimeUnit.SECONDS))
+                .isEqualTo("value");
+        assertThat(cache.stats().loadFailures())
+                .isEqualTo(1);
+    }
+
+    @Test
+    void testObjectWeigher() throws Exception {
+        try (var weighed = new CacheService(Duration.ofMinutes(1), 100, null, value -> 30)) {
+            weighed.get("first", () -> List.of(new Object(), new Object()));
+
+            assertThat(weighed.stats().weight())
+                    .isEqualTo(2 * (16 + 30));
+        }
+    }
+
+}
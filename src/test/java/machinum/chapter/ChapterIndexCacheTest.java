@@ -0,0 +1,129 @@
+package machinum.chapter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+class ChapterIndexCacheTest {
+
+    static final String CONTENT = """
+            {"number":1,"translatedTitle":"First"}
+            {"number":2,"translatedTitle":"Second"}""";
+
+    ChapterJsonlConverter converter = new ChapterJsonlConverter(new ObjectMapper().findAndRegisterModules());
+
+    AtomicInteger downloads = new AtomicInteger();
+
+    @Test
+    void testSameEtagIsNotDownloadedTwice() {
+        var cache = new ChapterIndexCache(converter, 1024, null);
+
+        var first = cache.get("book.jsonl", "etag-1", CONTENT.length(), loader());
+        var second = cache.get("book.jsonl", "etag-1", CONTENT.length(), loader());
+        cache.get("book.jsonl", "etag-2", CONTENT.length(), loader());
+
+        assertThat(second)
+                .isSameAs(first)
+                .extracting(Chapter::getTranslatedTitle)
+                .containsExactly("First", "Second");
+        assertThat(downloads)
+                .hasValue(2);
+    }
+
+    @Test
+    void testFileBiggerThanCacheIsNotAccepted() {
+        var cache = new ChapterIndexCache(converter, 1024, null);
+
+        assertThat(cache.accepts(1024)).isTrue();
+        assertThat(cache.accepts(1025)).isFalse();
+        assertThat(new ChapterIndexCache(converter, 0, null).accepts(1)).isFalse();
+    }
+
+    @Test
+    void testEvictedEntryIsReadFromSpill(@TempDir Path dir) throws Exception {
+        // Every file is bigger than the limit, so nothing stays in memory
+        var cache = new ChapterIndexCache(converter, 1, dir);
+
+        cache.get("book.jsonl", "etag-1", CONTENT.length(), loader());
+        var result = cache.get("book.jsonl", "etag-1", CONTENT.length(), loader());
+        cache.get("book.jsonl", "etag-2", CONTENT.length(), loader());
+
+        assertThat(result)
+                .hasSize(2);
+        assertThat(downloads)
+                .hasValue(2);
+        try (var files = Files.list(dir)) {
+            assertThat(files.map(path -> path.getFileName().toString()))
+                    .singleElement()
+                    .asString()
+                    .endsWith("-etag-2.jsonl");
+        }
+    }
+
+    @Test
+    void testChaptersAreNormalizedOnLoad() {
+        var cache = new ChapterIndexCache(converter, 1024, null);
+        Supplier<InputStream> raw = () -> new ByteArrayInputStream("""
+                {"value":"First\\nText"}
+                {"value":"Second\\nMore"}""".getBytes(StandardCharsets.UTF_8));
+
+        var result = cache.get("raw.jsonl", "etag-1", 64, raw);
+
+        assertThat(result)
+                .extracting(Chapter::getNumber, Chapter::getTranslatedTitle, Chapter::getTranslatedText)
+                .containsExactly(tuple(1, "First", "Text"), tuple(2, "Second", "More"));
+    }
+
+    @Test
+    void testConcurrentMissIsLoadedOnce() throws Exception {
+        var cache = new ChapterIndexCache(converter, 1024, null);
+        var started = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+        Supplier<InputStream> slow = () -> {
+            downloads.incrementAndGet();
+            started.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return new ByteArrayInputStream(CONTENT.getBytes(StandardCharsets.UTF_8));
+        };
+
+        var first = CompletableFuture.supplyAsync(() -> cache.get("book.jsonl", "etag-1", CONTENT.length(), slow));
+        assertThat(started.await(5, TimeUnit.SECONDS))
+                .isTrue();
+        var second = CompletableFuture.supplyAsync(() -> cache.get("book.jsonl", "etag-1", CONTENT.length(), slow));
+        Thread.sleep(100);
+        release.countDown();
+
+        assertThat(second.get(5, TimeUnit.SECONDS))
+                .isSameAs(first.get(5, TimeUnit.SECONDS));
+        assertThat(downloads)
+                .hasValue(1);
+    }
+
+    /* ============= */
+
+    private Supplier<InputStream> loader() {
+        return () -> {
+            downloads.incrementAndGet();
+            return new ByteArrayInputStream(CONTENT.getBytes(StandardCharsets.UTF_8));
+        };
+    }
+
+}
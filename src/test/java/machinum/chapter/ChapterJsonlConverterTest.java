@@ -0,0 +1,78 @@
+package machinum.chapter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import machinum.exception.AppException;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ChapterJsonlConverterTest {
+
+    ChapterJsonlConverter converter = new ChapterJsonlConverter(new ObjectMapper().findAndRegisterModules());
+
+    @Test
+    void testFromStreamWindow() {
+        var content = IntStream.rangeClosed(1, 10)
+                .mapToObj("{\"number\":%d,\"translatedTitle\":\"Глава %<d\"}"::formatted)
+                .collect(Collectors.joining("\r\n", "", "\n\n"));
+
+        var result = converter.fromStream(stream(content), 4, 6);
+
+        assertThat(result)
+                .hasSize(7);
+        assertThat(result.getFirst().getTranslatedTitle())
+                .isEqualTo("Глава 1");
+        assertThat(result.subList(1, 4))
+                .containsOnlyNulls();
+        assertThat(result.subList(4, 7))
+                .extracting(Chapter::getNumber)
+                .containsExactly(5, 6, 7);
+    }
+
+    @Test
+    void testFromStreamMatchesFromString() {
+        var content = """
+                {"number":1,"translatedText":"a"}
+
+                {"number":2,"translatedText":"b"}
+                {"number":3,"translatedText":"c"}""";
+
+        assertThat(converter.fromStream(stream(content), 0, Integer.MAX_VALUE - 1))
+                .isEqualTo(converter.fromString(content));
+    }
+
+    @Test
+    void testFromStreamEmpty() {
+        assertThatThrownBy(() -> converter.fromStream(stream(""), 0, 10))
+                .isInstanceOf(AppException.class);
+    }
+
+    @Test
+    void testFromStreamMalformedLineInWindow() {
+        var content = """
+                {"number":1,"translatedText":"a"}
+
+                {"number":2,"translatedText":"b"}
+                {"number":3,"trans""";
+
+        assertThatThrownBy(() -> converter.fromStream(stream(content), 1, 2))
+                .isInstanceOf(AppException.class)
+                .hasMessageContaining("line 4");
+        assertThat(converter.fromStream(stream(content), 1, 1))
+                .hasSize(2)
+                .doesNotContainNull();
+    }
+
+    /* ============= */
+
+    private static ByteArrayInputStream stream(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+}
@@ -0,0 +1,18 @@
+package machinum.image;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ImageControllerTest {
+
+    @Test
+    void testIfNoneMatch() {
+        assertThat(ImageController.matches("\"abc\"", "\"abc\"")).isTrue();
+        assertThat(ImageController.matches("\"x\", W/\"abc\"", "\"abc\"")).isTrue();
+        assertThat(ImageController.matches("*", "\"abc\"")).isTrue();
+        assertThat(ImageController.matches("\"abd\"", "\"abc\"")).isFalse();
+        assertThat(ImageController.matches(null, "\"abc\"")).isFalse();
+    }
+
+}
@@ -0,0 +1,57 @@
+package machinum.image;
+
+import machinum.exception.AppException;
+import machinum.image.ImageStorage.LocalImageStorage;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ImageStorageTest {
+
+    @TempDir
+    Path folder;
+
+    @Test
+    void testLocalStorage() throws Exception {
+        var storage = new LocalImageStorage(folder);
+
+        storage.put("images/1", new byte[]{1, 2, 3}, "image/png");
+
+        try (var stream = storage.open("images/1")) {
+            assertThat(stream.readAllBytes()).containsExactly(1, 2, 3);
+        }
+        assertThat(folder.resolve("images")).isDirectoryNotContaining("glob:**.tmp");
+
+        storage.delete("images/1");
+
+        assertThatThrownBy(() -> storage.open("images/1"))
+                .isInstanceOf(AppException.class);
+    }
+
+    @Test
+    void testLocalStorageDeleteAll() {
+        var storage = new LocalImageStorage(folder);
+        storage.put("variants/1/w-64", new byte[]{1}, "image/png");
+        storage.put("variants/1/max-100", new byte[]{2}, "image/jpeg");
+        storage.put("variants/2/w-64", new byte[]{3}, "image/png");
+
+        storage.deleteAll("variants/1/");
+
+        assertThat(storage.exists("variants/1/w-64")).isFalse();
+        assertThat(storage.exists("variants/1/max-100")).isFalse();
+        assertThat(storage.exists("variants/2/w-64")).isTrue();
+    }
+
+    @Test
+    void testKeyOutsideOfFolder() {
+        var storage = new LocalImageStorage(folder.resolve("images"));
+
+        assertThatThrownBy(() -> storage.put("../secret", new byte[]{1}, "image/png"))
+                .isInstanceOf(AppException.class);
+    }
+
+}
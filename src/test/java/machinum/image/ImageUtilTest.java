@@ -0,0 +1,71 @@
+package machinum.image;
+
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ImageUtilTest {
+
+    @Test
+    void testImageWhichFitsIsReturnedAsIs() {
+        var data = ImageUtil.encode(new BufferedImage(100, 100, BufferedImage.TYPE_INT_RGB), "png", 1f);
+
+        assertThat(ImageUtil.compressImage(data, data.length)).isSameAs(data);
+    }
+
+    @Test
+    void testQualityIsReduced() throws Exception {
+        var data = ImageUtil.encode(noise(600, 900), "png", 1f);
+        var atMaxQuality = ImageUtil.encode(noise(600, 900), "jpeg", 0.9f);
+        int maxSize = atMaxQuality.length * 3 / 4;
+
+        var result = ImageUtil.compressImage(data, maxSize);
+
+        assertThat(result.length).isLessThanOrEqualTo(maxSize);
+        var image = ImageIO.read(new ByteArrayInputStream(result));
+        assertThat(image.getWidth()).isEqualTo(600);
+        assertThat(image.getHeight()).isEqualTo(900);
+    }
+
+    @Test
+    void testImageIsDownscaled() throws Exception {
+        var data = ImageUtil.encode(noise(600, 900), "png", 1f);
+
+        var result = ImageUtil.compressImage(data, 30 * 1024);
+
+        assertThat(result.length).isLessThanOrEqualTo(30 * 1024);
+        var image = ImageIO.read(new ByteArrayInputStream(result));
+        assertThat(image.getWidth()).isLessThan(600);
+    }
+
+    @Test
+    void testResizeKeepsTransparency() {
+        var image = new BufferedImage(200, 100, BufferedImage.TYPE_INT_ARGB);
+
+        var result = ImageUtil.resize(image, 100, 100);
+
+        assertThat(result.getWidth()).isEqualTo(100);
+        assertThat(result.getColorModel().hasAlpha()).isTrue();
+        assertThat(result.getRGB(50, 25) >>> 24).isZero();
+    }
+
+    /* ============= */
+
+    private static BufferedImage noise(int width, int height) {
+        var image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        var random = new Random(42);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setRGB(x, y, random.nextInt(0xFFFFFF));
+            }
+        }
+
+        return image;
+    }
+
+}
@@ -0,0 +1,58 @@
+package machinum.image;
+
+import machinum.image.ImageVariantService.VariantSpec;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ImageVariantServiceTest {
+
+    @TempDir
+    Path folder;
+
+    @Test
+    void testSpec() {
+        assertThat(VariantSpec.of(100, null, null)).isEqualTo(new VariantSpec(128, "jpeg", 85));
+        assertThat(VariantSpec.of(5000, "JPG", 70).key()).isEqualTo("w1920-jpeg-q70");
+        assertThat(VariantSpec.of(64, "png", 70).key()).isEqualTo("w64-png");
+        assertThat(VariantSpec.of(null, "png", null).width()).isEqualTo(1920);
+
+        assertThatThrownBy(() -> VariantSpec.of(128, "gif", null)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> VariantSpec.of(128, null, 5)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> VariantSpec.of(0, null, null)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void testVariantIsRenderedOnce() throws Exception {
+        var storage = new ImageStorage.LocalImageStorage(folder);
+        var repository = mock(ImageRepository.class);
+        var image = Image.builder().id("1").build();
+        var original = ImageUtil.encode(new BufferedImage(800, 400, BufferedImage.TYPE_INT_RGB), "png", 1f);
+        when(repository.openData(image)).thenAnswer(invocation -> new ByteArrayInputStream(original));
+        var service = new ImageVariantService(repository, storage);
+
+        var spec = VariantSpec.of(300, null, null);
+        for (int i = 0; i < 2; i++) {
+            try (var data = service.open(image, spec)) {
+                var variant = ImageIO.read(data);
+                assertThat(variant.getWidth()).isEqualTo(320);
+                assertThat(variant.getHeight()).isEqualTo(160);
+            }
+        }
+
+        verify(repository, times(1)).openData(image);
+        assertThat(storage.exists("variants/1/w320-jpeg-q85")).isTrue();
+    }
+
+}
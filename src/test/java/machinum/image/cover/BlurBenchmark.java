@@ -0,0 +1,126 @@
+package machinum.image.cover;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ConvolveOp;
+import java.awt.image.Kernel;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link BlurEngine} with the blurs it replaced, the 2D {@link ConvolveOp} of {@link CoverRenderer}
+ * and the per pixel kernel of {@link ResizeStrategy.BlurExpandStrategy}.
+ * <p>
+ * Run with {@code ./gradlew jmh --args="BlurBenchmark"}, the slow legacy blurs make a run take several minutes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class BlurBenchmark {
+
+    @Param({"5", "15", "25"})
+    int radius;
+
+    BufferedImage image;
+
+    @Setup
+    public void setUp() {
+        image = new BufferedImage(1200, 1800, BufferedImage.TYPE_INT_RGB);
+        var random = new Random(42);
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                image.setRGB(x, y, random.nextInt(0xFFFFFF));
+            }
+        }
+    }
+
+    @Benchmark
+    public BufferedImage blurEngine() {
+        return BlurEngine.gaussian(image, radius);
+    }
+
+    @Benchmark
+    public BufferedImage convolveOp() {
+        int size = radius * 2 + 1;
+        float[] matrix = new float[size * size];
+        float sigma = radius / 3.0f;
+        float sum = 0;
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                int x = i - radius;
+                int y = j - radius;
+                matrix[i * size + j] = (float) Math.exp(-(x * x + y * y) / (2 * sigma * sigma));
+                sum += matrix[i * size + j];
+            }
+        }
+        for (int i = 0; i < matrix.length; i++) {
+            matrix[i] /= sum;
+        }
+
+        return new ConvolveOp(new Kernel(size, size, matrix), ConvolveOp.EDGE_NO_OP, null).filter(image, null);
+    }
+
+    @Benchmark
+    public BufferedImage separableGetRgb() {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        float[] kernel = new float[2 * radius + 1];
+        float sigma = radius / 3.0f;
+        float total = 0;
+        for (int i = -radius; i <= radius; i++) {
+            kernel[i + radius] = (float) Math.exp(-(i * i) / (2 * sigma * sigma));
+            total += kernel[i + radius];
+        }
+        for (int i = 0; i < kernel.length; i++) {
+            kernel[i] /= total;
+        }
+
+        var temp = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        var result = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                temp.setRGB(x, y, convolve(image, kernel, x, y, 1, 0));
+            }
+        }
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                result.setRGB(x, y, convolve(temp, kernel, x, y, 0, 1));
+            }
+        }
+
+        return result;
+    }
+
+    /* ============= */
+
+    private int convolve(BufferedImage source, float[] kernel, int x, int y, int dx, int dy) {
+        float a = 0, r = 0, g = 0, b = 0;
+        for (int i = -radius; i <= radius; i++) {
+            int px = Math.min(Math.max(x + i * dx, 0), source.getWidth() - 1);
+            int py = Math.min(Math.max(y + i * dy, 0), source.getHeight() - 1);
+            int pixel = source.getRGB(px, py);
+            float weight = kernel[i + radius];
+            a += ((pixel >> 24) & 0xFF) * weight;
+            r += ((pixel >> 16) & 0xFF) * weight;
+            g += ((pixel >> 8) & 0xFF) * weight;
+            b += (pixel & 0xFF) * weight;
+        }
+
+        return Math.round(a) << 24 | Math.round(r) << 16 | Math.round(g) << 8 | Math.round(b);
+    }
+
+}
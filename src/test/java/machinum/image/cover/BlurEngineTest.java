@@ -0,0 +1,54 @@
+package machinum.image.cover;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BlurEngineTest {
+
+    @Test
+    void testUniformImageIsUnchanged() {
+        var image = new BufferedImage(600, 400, BufferedImage.TYPE_INT_RGB);
+        var g = image.createGraphics();
+        g.setColor(new Color(10, 120, 240));
+        g.fillRect(0, 0, 600, 400);
+        g.dispose();
+
+        var result = BlurEngine.gaussian(image, 25);
+
+        assertThat(result.getRGB(0, 0) & 0xFFFFFF).isEqualTo(0x0A78F0);
+        assertThat(result.getRGB(300, 200) & 0xFFFFFF).isEqualTo(0x0A78F0);
+        assertThat(result.getRGB(599, 399) & 0xFFFFFF).isEqualTo(0x0A78F0);
+    }
+
+    @Test
+    void testPointIsSpreadSymmetrically() {
+        var image = new BufferedImage(101, 101, BufferedImage.TYPE_INT_ARGB);
+        image.setRGB(50, 50, 0xFFFFFFFF);
+
+        var result = BlurEngine.gaussian(image, 9);
+
+        int center = result.getRGB(50, 50) >>> 24;
+        assertThat(center).isBetween(1, 254);
+        assertThat(result.getRGB(47, 50)).isEqualTo(result.getRGB(53, 50)).isEqualTo(result.getRGB(50, 47));
+        assertThat(result.getRGB(47, 50) >>> 24).isLessThan(center);
+        assertThat(result.getRGB(0, 0)).isZero();
+    }
+
+    @Test
+    void testZeroRadius() {
+        var image = new BufferedImage(10, 10, BufferedImage.TYPE_INT_RGB);
+
+        assertThat(BlurEngine.gaussian(image, 0)).isSameAs(image);
+    }
+
+    @Test
+    void testBoxRadii() {
+        assertThat(BlurEngine.boxRadii(3)).containsExactly(2, 2, 3);
+        assertThat(BlurEngine.boxRadii(25 / 3.0)).containsExactly(8, 8, 8);
+    }
+
+}
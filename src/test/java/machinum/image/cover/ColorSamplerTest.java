@@ -0,0 +1,80 @@
+package machinum.image.cover;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ColorSamplerTest {
+
+    @Test
+    void testExtract() {
+        var image = new BufferedImage(400, 600, BufferedImage.TYPE_INT_RGB);
+        var g = image.createGraphics();
+        g.setColor(new Color(20, 40, 200));
+        g.fillRect(0, 0, 400, 600);
+        g.setColor(new Color(201, 13, 7));
+        g.fillRect(0, 0, 100, 150);
+        g.setColor(new Color(9, 180, 33));
+        g.fillRect(300, 0, 100, 150);
+        g.dispose();
+
+        var palette = ColorSampler.extract(image);
+
+        assertThat(palette.getDominant()).isEqualTo(new Color(20, 40, 200));
+        assertThat(palette.getTopLeftColor()).isEqualTo(new Color(201, 13, 7));
+        assertThat(palette.getTopRightColor()).isEqualTo(new Color(9, 180, 33));
+    }
+
+    @Test
+    void testSimilarColorsAreCountedTogether() {
+        var image = new BufferedImage(100, 100, BufferedImage.TYPE_INT_RGB);
+        var g = image.createGraphics();
+        g.setColor(new Color(10, 10, 10));
+        g.fillRect(0, 0, 100, 40);
+        // Noise of a bright area, every exact color is rarer than the dark one
+        for (int y = 40; y < 100; y++) {
+            for (int x = 0; x < 100; x++) {
+                image.setRGB(x, y, new Color(240 + (x % 2) + (y % 4) / 2, 240, 240).getRGB());
+            }
+        }
+        g.dispose();
+
+        var dominant = ColorSampler.extract(image).getDominant();
+
+        assertThat(dominant.getRed()).isBetween(240, 243);
+        assertThat(dominant.getGreen()).isEqualTo(240);
+    }
+
+    @Test
+    void testCornerColorComesFromCorner() {
+        var image = new BufferedImage(400, 600, BufferedImage.TYPE_INT_RGB);
+        var g = image.createGraphics();
+        g.setColor(new Color(20, 40, 200));
+        g.fillRect(0, 0, 400, 600);
+        // Same bucket as the top left corner, painted below it
+        g.setColor(new Color(200, 0, 0));
+        g.fillRect(0, 0, 100, 150);
+        g.setColor(new Color(207, 15, 15));
+        g.fillRect(0, 450, 400, 150);
+        g.dispose();
+
+        var palette = ColorSampler.extract(image);
+
+        assertThat(palette.getTopLeftColor()).isEqualTo(new Color(200, 0, 0));
+    }
+
+    @Test
+    void testTinyImage() {
+        var image = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB);
+        image.setRGB(0, 0, 0xFF0000);
+
+        var palette = ColorSampler.extract(image);
+
+        assertThat(palette.getDominant()).isEqualTo(Color.RED);
+        assertThat(palette.getTopLeftColor()).isEqualTo(new Color(0x808080));
+    }
+
+}
@@ -0,0 +1,60 @@
+package machinum.image.cover;
+
+import machinum.image.ImageStorage.LocalImageStorage;
+import machinum.image.cover.CoverService.CoverInfo;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CoverCacheTest {
+
+    private static final CoverInfo INFO = new CoverInfo("1", "Book", "brand", "https://t.me/x", "top", "bottom");
+
+    @TempDir
+    Path folder;
+
+    CoverCache cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new CoverCache(new LocalImageStorage(folder));
+    }
+
+    @Test
+    void testCoverIsRenderedOnce() {
+        var calls = new AtomicInteger();
+
+        for (int i = 0; i < 3; i++) {
+            var result = cache.resolve(bytes("origin"), INFO, () -> {
+                calls.incrementAndGet();
+                return bytes("cover");
+            });
+            assertThat(result).isEqualTo(bytes("cover"));
+        }
+
+        assertThat(calls).hasValue(1);
+    }
+
+    @Test
+    void testKeyDependsOnInput() {
+        var key = CoverCache.key(bytes("origin"), INFO);
+
+        assertThat(key).startsWith("covers/").isEqualTo(CoverCache.key(bytes("origin"), INFO));
+        assertThat(CoverCache.key(bytes("other"), INFO)).isNotEqualTo(key);
+        assertThat(CoverCache.key(bytes("origin"), new CoverInfo("2", "Book", "brand", "https://t.me/x", "top",
+                "bottom"))).isNotEqualTo(key);
+    }
+
+    /* ============= */
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+}
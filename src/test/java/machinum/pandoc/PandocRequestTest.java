@@ -0,0 +1,46 @@
+package machinum.pandoc;
+
+import machinum.pandoc.PandocRestClient.PandocRequest;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PandocRequestTest {
+
+    @Test
+    void testContentHash() {
+        var request = PandocRequest.createNew(b -> b
+                .markdownFiles(List.of(bytes("# Chapter 1"), bytes("# Chapter 2")))
+                .coverImage(bytes("cover"))
+                .title("Title")
+                .description("Line\nbreak")
+                .outputFilename("book_1.epub"));
+
+        var renamed = request.toBuilder()
+                .outputFilename("book_2.epub")
+                .build();
+        var changedText = request.toBuilder()
+                .markdownFiles(List.of(bytes("# Chapter 1"), bytes("# Chapter 2!")))
+                .build();
+        var shiftedText = request.toBuilder()
+                .markdownFiles(List.of(bytes("# Chapter 1# Chapter 2")))
+                .build();
+
+        assertThat(renamed.contentHash())
+                .isEqualTo(request.contentHash());
+        assertThat(changedText.contentHash())
+                .isNotEqualTo(request.contentHash());
+        assertThat(shiftedText.contentHash())
+                .isNotEqualTo(request.contentHash());
+    }
+
+    /* ============= */
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+}
@@ -0,0 +1,124 @@
+package machinum.release;
+
+import machinum.minio.MinioService;
+import machinum.minio.MinioService.FileData;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static machinum.release.ReleaseCheckpoints.CHECKPOINTS;
+import static machinum.util.Util.sha256;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ReleaseCheckpointsTest {
+
+    @Mock
+    MinioService minioService;
+    @Mock
+    ReleaseRepository repository;
+
+    ReleaseCheckpoints checkpoints;
+
+    @BeforeEach
+    void setUp() {
+        checkpoints = new ReleaseCheckpoints(minioService, repository);
+    }
+
+    @Test
+    void testStageIsBuiltAndCheckpointed() {
+        var release = Release.builder().id("r1").build();
+        when(minioService.findByKey("releases/r1/epub-abc")).thenReturn(Optional.empty());
+
+        var result = checkpoints.resolve(release, "epub", "abc", "application/epub+zip", () -> bytes("epub"));
+
+        assertThat(result).isEqualTo(bytes("epub"));
+        ArgumentCaptor<Map<String, String>> metadata = ArgumentCaptor.captor();
+        verify(minioService).createFile(eq("releases/r1/epub-abc"), eq(bytes("epub")), eq("application/epub+zip"),
+                metadata.capture());
+        assertThat(metadata.getValue()).containsEntry("content-hash", sha256(bytes("epub")));
+        assertThat(release.<Map<String, Object>>metadata(CHECKPOINTS))
+                .containsEntry("epub", Map.of("hash", "abc", "key", "releases/r1/epub-abc",
+                        "contentHash", sha256(bytes("epub"))));
+        verify(repository).patchMetadataEntry("r1", CHECKPOINTS, Map.of("epub", Map.of("hash", "abc",
+                "key", "releases/r1/epub-abc", "contentHash", sha256(bytes("epub")))));
+    }
+
+    @Test
+    void testStageIsResumedFromCheckpoint() {
+        var release = Release.builder().id("r1").build();
+        when(minioService.findByKey("releases/r1/epub-abc"))
+                .thenReturn(Optional.of(file(bytes("epub"), sha256(bytes("epub")))));
+        var calls = new AtomicInteger();
+
+        var result = checkpoints.resolve(release, "epub", "abc", "application/epub+zip", () -> {
+            calls.incrementAndGet();
+            return bytes("other");
+        });
+
+        assertThat(result).isEqualTo(bytes("epub"));
+        assertThat(calls).hasValue(0);
+        verify(minioService, never()).createFile(anyString(), any(), anyString(), any());
+    }
+
+    @Test
+    void testDamagedCheckpointIsBuiltAgain() {
+        var release = Release.builder().id("r1").build();
+        when(minioService.findByKey("releases/r1/cover-abc"))
+                .thenReturn(Optional.of(file(bytes("broken"), sha256(bytes("cover")))));
+
+        var result = checkpoints.resolve(release, "cover", "abc", "image/png", () -> bytes("cover"));
+
+        assertThat(result).isEqualTo(bytes("cover"));
+        verify(minioService).createFile(eq("releases/r1/cover-abc"), eq(bytes("cover")), eq("image/png"), any());
+    }
+
+    @Test
+    void testReleaseWithoutId() {
+        var release = Release.builder().build();
+
+        var result = checkpoints.resolve(release, "epub", "abc", "application/epub+zip", () -> bytes("epub"));
+
+        assertThat(result).isEqualTo(bytes("epub"));
+        verifyNoInteractions(minioService, repository);
+    }
+
+    @Test
+    void testCheckpointsAreClearedAfterRelease() {
+        var release = Release.builder().id("r1").build();
+        release.addMetadata(CHECKPOINTS, Map.of("epub", Map.of("hash", "abc")));
+        when(minioService.removeFiles("releases/r1/")).thenReturn(2);
+
+        checkpoints.clear(release);
+
+        assertThat(release.hasMetadata(CHECKPOINTS)).isFalse();
+        verify(repository).removeMetadata("r1", CHECKPOINTS);
+    }
+
+    /* ============= */
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static FileData file(byte[] data, String contentHash) {
+        return new FileData(data, "application/octet-stream", data.length, null, "etag",
+                Map.of("content-hash", contentHash));
+    }
+
+}
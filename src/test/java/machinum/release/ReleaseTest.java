@@ -0,0 +1,37 @@
+package machinum.release;
+
+import machinum.release.Release.ReleaseStatus;
+import org.junit.jupiter.api.Test;
+
+import static machinum.telegram.TelegramHandler.TelegramConstants.TELEGRAM_BOOK_ID;
+import static machinum.telegram.TelegramHandler.TelegramConstants.TELEGRAM_CHAPTER_ID;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ReleaseTest {
+
+    @Test
+    void testResetDropsPublishedMessages() {
+        var release = Release.builder().build();
+        release.addMetadata(TELEGRAM_CHAPTER_ID, 10);
+        release.addMetadata(TELEGRAM_BOOK_ID, 5);
+        release.addMetadata("pages", "1-10");
+        release.status(ReleaseStatus.EXECUTED);
+
+        release.status(ReleaseStatus.DRAFT);
+
+        assertThat(release.getMetadata())
+                .containsOnlyKeys("pages");
+    }
+
+    @Test
+    void testFailedReleaseKeepsPublishedMessages() {
+        var release = Release.builder().build();
+        release.addMetadata(TELEGRAM_CHAPTER_ID, 10);
+
+        release.status(ReleaseStatus.MANUAL_ACTION_REQUIRED);
+
+        assertThat(release.getMetadata())
+                .containsEntry(TELEGRAM_CHAPTER_ID, 10);
+    }
+
+}
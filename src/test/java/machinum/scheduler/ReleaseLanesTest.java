@@ -0,0 +1,79 @@
+package machinum.scheduler;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ReleaseLanesTest {
+
+    ReleaseLanes lanes = new ReleaseLanes(2);
+
+    @AfterEach
+    void tearDown() {
+        lanes.close();
+    }
+
+    @Test
+    void testOrderWithinLane() {
+        var result = new CopyOnWriteArrayList<Integer>();
+
+        var futures = IntStream.range(0, 20)
+                .mapToObj(i -> lanes.submit("target", () -> {
+                    sleep(i % 3);
+                    result.add(i);
+                }))
+                .toArray(CompletableFuture[]::new);
+        CompletableFuture.allOf(futures).join();
+
+        assertThat(result)
+                .containsExactlyElementsOf(IntStream.range(0, 20).boxed().toList());
+        assertThat(lanes.activeLanes())
+                .isZero();
+    }
+
+    @Test
+    void testLanesRunConcurrently() throws InterruptedException {
+        var latch = new CountDownLatch(2);
+        var result = new CopyOnWriteArrayList<String>();
+
+        var first = lanes.submit("first", () -> await(latch, result, "first"));
+        var second = lanes.submit("second", () -> await(latch, result, "second"));
+        CompletableFuture.allOf(first, second).join();
+
+        assertThat(latch.await(1, TimeUnit.SECONDS))
+                .isTrue();
+        assertThat(result)
+                .containsExactlyInAnyOrderElementsOf(List.of("first", "second"));
+    }
+
+    /* ============= */
+
+    private static void await(CountDownLatch latch, List<String> result, String name) {
+        latch.countDown();
+        try {
+            // Both lanes must be in progress at the same time to pass the latch
+            if (latch.await(5, TimeUnit.SECONDS)) {
+                result.add(name);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
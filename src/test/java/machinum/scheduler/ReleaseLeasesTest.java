@@ -0,0 +1,102 @@
+package machinum.scheduler;
+
+import machinum.release.ReleaseRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ReleaseLeasesTest {
+
+    private static final Duration LEASE = Duration.ofSeconds(3);
+
+    @Mock
+    ReleaseRepository repository;
+
+    ReleaseLeases leases;
+
+    @BeforeEach
+    void setUp() {
+        leases = new ReleaseLeases("node-1", repository, LEASE);
+    }
+
+    @AfterEach
+    void tearDown() {
+        leases.close();
+    }
+
+    @Test
+    void testLeasedByAnotherNode() {
+        when(repository.claim("1", "node-1", LEASE)).thenReturn(false);
+        var executed = new AtomicBoolean();
+
+        assertThat(leases.runLeased("1", () -> executed.set(true))).isFalse();
+
+        assertThat(executed).isFalse();
+        verify(repository, never()).releaseLease(anyString(), anyString());
+        assertThat(leases.stats().conflicts()).isEqualTo(1);
+    }
+
+    @Test
+    void testLeaseIsRenewedAndReturned() {
+        when(repository.claim("1", "node-1", LEASE)).thenReturn(true);
+        when(repository.renewLease("1", "node-1", LEASE)).thenReturn(true);
+
+        var result = leases.runLeased("1", () -> {
+            assertThat(leases.stats().active()).isEqualTo(1);
+            sleep(1_500);
+        });
+
+        assertThat(result).isTrue();
+        verify(repository, atLeastOnce()).renewLease("1", "node-1", LEASE);
+        verify(repository).releaseLease("1", "node-1");
+        assertThat(leases.stats())
+                .extracting(ReleaseLeases.LeaseStats::claims, ReleaseLeases.LeaseStats::active)
+                .containsExactly(1L, 0);
+    }
+
+    @Test
+    void testLeaseIsReturnedOnFailure() {
+        when(repository.claim("1", "node-1", LEASE)).thenReturn(true);
+
+        assertThatThrownBy(() -> leases.runLeased("1", () -> {
+            throw new IllegalStateException("failed");
+        })).isInstanceOf(IllegalStateException.class);
+
+        verify(repository).releaseLease("1", "node-1");
+        verify(repository, never()).renewLease(anyString(), anyString(), any());
+    }
+
+    @Test
+    void testTakeOverExpired() {
+        when(repository.claimExpired("node-1", LEASE, 10)).thenReturn(List.of());
+
+        assertThat(leases.takeOverExpired(10)).isEmpty();
+        assertThat(leases.stats().takeovers()).isZero();
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
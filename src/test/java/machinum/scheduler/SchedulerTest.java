@@ -10,13 +10,23 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.time.Duration;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.Optional;
 import java.util.concurrent.Executors;
 import java.util.concurrent.atomic.AtomicBoolean;
 
+import static machinum.scheduler.ActionHandler.PREPARED_AT_KEYWORD;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.after;
 import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
 class SchedulerTest {
@@ -59,4 +69,69 @@ class SchedulerTest {
                 .isTrue();
     }
 
+    @Test
+    void testReleaseMovedToLaterTimeIsNotExecutedEarly() {
+        var moved = upcoming("1", LocalDateTime.now().plusDays(1));
+        when(repository.findById("1")).thenReturn(Optional.of(moved));
+
+        scheduler.execute(upcoming("1", LocalDateTime.now().plusSeconds(1)));
+
+        verify(repository, timeout(4_000)).findById("1");
+        verify(actionHandler, after(500).never()).handle(any());
+        assertThat(scheduler.pendingCount())
+                .isEqualTo(1);
+    }
+
+    @Test
+    void testManualExecutionIgnoresStoredTime() {
+        var release = upcoming("1", LocalDateTime.now().plusDays(1));
+        when(repository.findById("1")).thenReturn(Optional.of(release));
+
+        scheduler.execute(release.copy(b -> b.releaseAt(LocalDateTime.now())));
+
+        verify(actionHandler, timeout(2_000)).handle(release);
+    }
+
+    @Test
+    void testUpcomingReleaseIsPrepared() {
+        var release = upcoming("1", LocalDateTime.now().plusHours(1));
+        when(repository.findAllToExecute()).thenReturn(List.of(release));
+        when(repository.findById("1")).thenReturn(Optional.of(release));
+
+        try (var preparing = preparingScheduler()) {
+            preparing.init();
+
+            verify(actionHandler, timeout(2_000)).prepare(release);
+        }
+    }
+
+    @Test
+    void testReleaseOutsideWindowIsNotPrepared() {
+        var later = upcoming("1", LocalDateTime.now().plusDays(1));
+        var prepared = upcoming("2", LocalDateTime.now().plusHours(1))
+                .addMetadata(PREPARED_AT_KEYWORD, LocalDateTime.now().toString());
+        when(repository.findAllToExecute()).thenReturn(List.of(later, prepared));
+
+        try (var preparing = preparingScheduler()) {
+            preparing.init();
+
+            verify(actionHandler, after(500).never()).prepare(any());
+        }
+    }
+
+    /* ============= */
+
+    private Scheduler preparingScheduler() {
+        return new Scheduler(Executors.newScheduledThreadPool(1), repository, actionHandler, null, LocalTime.MIDNIGHT,
+                null, Duration.ofHours(6));
+    }
+
+    private static Release upcoming(String id, LocalDateTime releaseAt) {
+        return Release.builder()
+                .id(id)
+                .releaseTargetId("t1")
+                .releaseAt(releaseAt)
+                .build();
+    }
+
 }
@@ -0,0 +1,112 @@
+package machinum.scheduler;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TimingWheelTest {
+
+    MutableClock clock = new MutableClock(Instant.parse("2025-01-01T10:00:00Z"));
+
+    TimingWheel wheel = new TimingWheel(clock, Duration.ofSeconds(1), 8, Runnable::run);
+
+    @Test
+    void testFiresAtDeadline() {
+        var result = new CopyOnWriteArrayList<String>();
+        var start = clock.instant();
+
+        wheel.schedule("late", start.plusSeconds(30), () -> result.add("late"));
+        wheel.schedule("early", start.plusSeconds(3), () -> result.add("early"));
+
+        advanceSeconds(2);
+        assertThat(result)
+                .isEmpty();
+
+        advanceSeconds(1);
+        assertThat(result)
+                .containsExactly("early");
+
+        // More than one round of the wheel
+        advanceSeconds(26);
+        assertThat(result)
+                .containsExactly("early");
+
+        advanceSeconds(1);
+        assertThat(result)
+                .containsExactly("early", "late");
+        assertThat(wheel.size())
+                .isZero();
+    }
+
+    @Test
+    void testCancelAndReplace() {
+        var result = new CopyOnWriteArrayList<String>();
+        var start = clock.instant();
+
+        wheel.schedule("first", start.plusSeconds(2), () -> result.add("first"));
+        wheel.schedule("second", start.plusSeconds(2), () -> result.add("second"));
+        wheel.schedule("second", start.plusSeconds(5), () -> result.add("second-replaced"));
+        assertThat(wheel.cancel("first"))
+                .isTrue();
+
+        advanceSeconds(5);
+
+        assertThat(result)
+                .isEqualTo(List.of("second-replaced"));
+    }
+
+    @Test
+    void testOverdueFiresOnNextTick() {
+        var result = new CopyOnWriteArrayList<String>();
+        advanceSeconds(10);
+
+        wheel.schedule("overdue", clock.instant().minusSeconds(5), () -> result.add("overdue"));
+        wheel.advance();
+
+        assertThat(result)
+                .containsExactly("overdue");
+    }
+
+    /* ============= */
+
+    private void advanceSeconds(int seconds) {
+        for (int i = 0; i < seconds; i++) {
+            clock.instant = clock.instant.plusSeconds(1);
+            wheel.advance();
+        }
+    }
+
+    private static class MutableClock extends Clock {
+
+        private volatile Instant instant;
+
+        private MutableClock(Instant instant) {
+            this.instant = instant;
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return instant;
+        }
+
+    }
+
+}
@@ -0,0 +1,151 @@
+package machinum.telegram;
+
+import machinum.audio.TTSRestClient.Metadata;
+import machinum.exception.AppException;
+import machinum.telegram.TelegramAudio.FileMetadata;
+import machinum.util.ZipUtil.LazyEntry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class AudioPipelineTest {
+
+    TelegramAudio telegramAudio;
+
+    Metadata metadata;
+
+    @BeforeEach
+    void setUp() {
+        telegramAudio = mock(TelegramAudio.class);
+        metadata = Metadata.createNew(b -> b.title("test"));
+    }
+
+    @Test
+    void testFilesAreReturnedInOrder() {
+        var joinStarted = new CountDownLatch(1);
+        var enhanceStarted = new CountDownLatch(1);
+        when(telegramAudio.putTogether(anyString(), any(), anyBoolean(), any(), any())).thenAnswer(invocation -> {
+            joinStarted.countDown();
+            // The join waits for the enhancement, so both run at the same time
+            assertThat(enhanceStarted.await(5, TimeUnit.SECONDS)).isTrue();
+            return file("book_0001.mp3");
+        });
+        when(telegramAudio.enhance(anyString(), any(), anyList(), any(), anyInt())).thenAnswer(invocation -> {
+            enhanceStarted.countDown();
+            List<LazyEntry> batch = invocation.getArgument(2);
+            int number = invocation.getArgument(4);
+            // Files can be returned in any order
+            return IntStream.range(0, batch.size())
+                    .mapToObj(i -> file("book_%04d.mp3".formatted(number + i)))
+                    .toList()
+                    .reversed();
+        });
+
+        var pipeline = new AudioPipeline(telegramAudio, 2, 1024 * 1024);
+        try (var run = pipeline.start("book.mp3", metadata, entry("a.mp3", 10), entries(5, 10), new byte[0])) {
+            var names = new ArrayList<String>();
+            run.forEachRemaining(file -> names.add(file.getFilename()));
+
+            assertThat(names).containsExactly("book_0001.mp3", "book_0002.mp3", "book_0003.mp3",
+                    "book_0004.mp3", "book_0005.mp3", "book_0006.mp3");
+            assertThat(run.expectedSizes()).containsExactly(10L, 10L, 10L, 10L, 10L, 10L);
+        }
+    }
+
+    @Test
+    void testBatchesWaitForUpload() throws Exception {
+        var started = new AtomicInteger();
+        when(telegramAudio.putTogether(anyString(), any(), anyBoolean(), any(), any()))
+                .thenReturn(file("book_0001.mp3"));
+        when(telegramAudio.enhance(anyString(), any(), anyList(), any(), anyInt())).thenAnswer(invocation -> {
+            started.incrementAndGet();
+            List<LazyEntry> batch = invocation.getArgument(2);
+            int number = invocation.getArgument(4);
+            return IntStream.range(0, batch.size())
+                    .mapToObj(i -> file("book_%04d.mp3".formatted(number + i)))
+                    .toList();
+        });
+
+        // Only the first file and one batch fit into the limit
+        var pipeline = new AudioPipeline(telegramAudio, 1, 2 * 1024);
+        try (var run = pipeline.start("book.mp3", metadata, entry("a.mp3", 1024), entries(3, 1024), new byte[0])) {
+            Thread.sleep(200);
+            assertThat(started.get()).isEqualTo(1);
+
+            run.next();
+            run.next();
+            Thread.sleep(200);
+            assertThat(started.get()).isEqualTo(3);
+        }
+    }
+
+    @Test
+    void testFailedBatchIsRethrown() {
+        when(telegramAudio.putTogether(anyString(), any(), anyBoolean(), any(), any()))
+                .thenReturn(file("book_0001.mp3"));
+        when(telegramAudio.enhance(anyString(), any(), anyList(), any(), anyInt()))
+                .thenThrow(new AppException("TTS is down"));
+
+        var pipeline = new AudioPipeline(telegramAudio, 5, 1024 * 1024);
+        try (var run = pipeline.start("book.mp3", metadata, entry("a.mp3", 10), entries(2, 10), new byte[0])) {
+            assertThatThrownBy(() -> run.forEachRemaining(file -> {}))
+                    .isInstanceOf(AppException.class)
+                    .hasMessage("TTS is down");
+        }
+    }
+
+    /* ============= */
+
+    private static FileMetadata file(String filename) {
+        return FileMetadata.builder()
+                .filename(filename)
+                .mp3Data(new byte[0])
+                .build();
+    }
+
+    private static List<LazyEntry> entries(int count, long size) {
+        return IntStream.range(0, count)
+                .mapToObj(i -> entry("%s.mp3".formatted(i), size))
+                .toList();
+    }
+
+    private static LazyEntry entry(String name, long size) {
+        return new LazyEntry() {
+
+            @Override
+            public String name() {
+                return name;
+            }
+
+            @Override
+            public long size() {
+                return size;
+            }
+
+            @Override
+            public InputStream open() {
+                return new ByteArrayInputStream(new byte[(int) size]);
+            }
+
+        };
+    }
+
+}
@@ -0,0 +1,97 @@
+package machinum.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.net.http.HttpRequest.BodyPublisher;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MultipartBodyPublisherTest {
+
+    @Test
+    void testBody(@TempDir Path dir) throws Exception {
+        var file = Files.writeString(dir.resolve("chapter.md"), "# Chapter");
+        var body = new MultipartBodyPublisher("XYZ")
+                .textPart("title", "Книга")
+                .textPart("preset", "podcast", "text/plain; charset=UTF-8")
+                .filePart("cover", "cover.png", "image/png", new byte[]{'p', 'n', 'g'})
+                .filePart("markdown", "chapter.md", "text/markdown", file)
+                .filePart("zip", "audio.zip", "application/zip", () -> new ByteArrayInputStream("zip".getBytes()));
+
+        assertThat(body.contentType())
+                .isEqualTo("multipart/form-data; boundary=XYZ");
+        assertThat(read(body.build()))
+                .isEqualTo("""
+                        --XYZ\r
+                        Content-Disposition: form-data; name="title"\r
+                        \r
+                        Книга\r
+                        --XYZ\r
+                        Content-Disposition: form-data; name="preset"\r
+                        Content-Type: text/plain; charset=UTF-8\r
+                        \r
+                        podcast\r
+                        --XYZ\r
+                        Content-Disposition: form-data; name="cover"; filename="cover.png"\r
+                        Content-Type: image/png\r
+                        \r
+                        png\r
+                        --XYZ\r
+                        Content-Disposition: form-data; name="markdown"; filename="chapter.md"\r
+                        Content-Type: text/markdown\r
+                        \r
+                        # Chapter\r
+                        --XYZ\r
+                        Content-Disposition: form-data; name="zip"; filename="audio.zip"\r
+                        Content-Type: application/zip\r
+                        \r
+                        zip\r
+                        --XYZ--\r
+                        """);
+    }
+
+    /* ============= */
+
+    private static String read(BodyPublisher publisher) throws Exception {
+        var result = new CompletableFuture<String>();
+        var out = new ByteArrayOutputStream();
+        publisher.subscribe(new Flow.Subscriber<>() {
+
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                subscription.request(Long.MAX_VALUE);
+            }
+
+            @Override
+            public void onNext(ByteBuffer item) {
+                var bytes = new byte[item.remaining()];
+                item.get(bytes);
+                out.writeBytes(bytes);
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                result.completeExceptionally(throwable);
+            }
+
+            @Override
+            public void onComplete() {
+                result.complete(out.toString(StandardCharsets.UTF_8));
+            }
+
+        });
+
+        return result.get(5, TimeUnit.SECONDS);
+    }
+
+}